@@ -0,0 +1,83 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quiltmc.intermediaryhashedmojmapconverter.ConversionPipeline;
+import org.quiltmc.intermediaryhashedmojmapconverter.ConversionScheduler;
+import org.quiltmc.intermediaryhashedmojmapconverter.IntermediaryToHashedMojmapConverter;
+import org.quiltmc.intermediaryhashedmojmapconverter.RemapIndex;
+
+// Converts a whole directory of synthetic files, from reading them to writing the remapped files
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConversionBenchmark {
+    private static final int MEMBERS = 40;
+
+    @Param({"100", "1000"})
+    public int files;
+
+    @Param({"false", "true"})
+    public boolean sorted;
+
+    private Path input;
+    private Path output;
+    private RemapIndex index;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        index = SyntheticMappings.createIndex(files, MEMBERS);
+        input = Files.createTempDirectory("conversionbenchmark-input");
+        output = Files.createTempDirectory("conversionbenchmark-output");
+        for (int i = 0; i < files; i++) {
+            Path file = input.resolve(SyntheticMappings.getClassName(i) + ".mapping");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, SyntheticMappings.join(SyntheticMappings.createEnigmaFile(i, files, MEMBERS)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(input);
+        delete(output);
+    }
+
+    @Benchmark
+    public List<ConversionScheduler.Failure> convert() throws IOException, InterruptedException {
+        List<ConversionScheduler.Failure> failures = IntermediaryToHashedMojmapConverter.convertDirectory(ConversionPipeline.create(), input, output, index, sorted, null);
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Failed to convert " + failures.get(0).file(), failures.get(0).error());
+        }
+        return failures;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
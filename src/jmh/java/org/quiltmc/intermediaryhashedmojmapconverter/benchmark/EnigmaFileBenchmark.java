@@ -0,0 +1,77 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaWriter;
+
+// Serializes a parsed file, which sorts its members, as --sorted conversions do for every file
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnigmaFileBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int members;
+
+    private EnigmaFile file;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        file = EnigmaReader.readLines(SyntheticMappings.createEnigmaFile(0, 100, members));
+    }
+
+    @Benchmark
+    public String serialize() {
+        return file.toString();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        CountingChannel channel = new CountingChannel();
+        try (EnigmaWriter writer = new EnigmaWriter(channel)) {
+            writer.write(file);
+        }
+        return channel.written;
+    }
+
+    // Discards what is written, so only the serialization itself is measured
+    private static final class CountingChannel implements WritableByteChannel {
+        private long written;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            src.position(src.limit());
+            written += remaining;
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
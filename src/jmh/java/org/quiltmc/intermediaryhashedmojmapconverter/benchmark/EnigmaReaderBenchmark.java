@@ -0,0 +1,95 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
+
+// Compares the byte tokenizer with the regex splitting the reader used before
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnigmaReaderBenchmark {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Param({"100", "1000", "10000"})
+    public int members;
+
+    private Path file;
+    private List<String> lines;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("enigmareaderbenchmark", ".mapping");
+        StringBuilder builder = new StringBuilder("CLASS net/minecraft/class_1 net/minecraft/Example\n");
+        for (int i = 0; i < members; i++) {
+            if (i % 2 == 0) {
+                builder.append("\tFIELD field_").append(i).append(" field").append(i).append(" Lnet/minecraft/class_").append(i).append(";\n");
+            } else {
+                builder.append("\tMETHOD method_").append(i).append(" method").append(i).append(" (Lnet/minecraft/class_").append(i).append(";I)V\n");
+                builder.append("\t\tCOMMENT Documentation for method ").append(i).append('\n');
+                builder.append("\t\tARG 1 arg").append(i).append('\n');
+            }
+        }
+        Files.writeString(file, builder);
+        lines = Files.readAllLines(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void regexTokenize(Blackhole blackhole) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        for (String line : lines) {
+            String[] tokens = WHITESPACE.split(line.trim());
+            blackhole.consume(EnigmaMapping.Type.valueOf(tokens[0]));
+            blackhole.consume(tokens);
+        }
+    }
+
+    @Benchmark
+    public void byteTokenize(Blackhole blackhole) throws IOException {
+        EnigmaTokenizer tokenizer = EnigmaTokenizer.open(file);
+        while (tokenizer.next()) {
+            blackhole.consume(tokenizer.getType());
+            blackhole.consume(tokenizer.getTokenEnd(0));
+        }
+    }
+
+    @Benchmark
+    public EnigmaFile readFile() throws IOException {
+        return EnigmaReader.readFile(file);
+    }
+
+    @Benchmark
+    public EnigmaFile readLines() {
+        return EnigmaReader.readLines(lines);
+    }
+}
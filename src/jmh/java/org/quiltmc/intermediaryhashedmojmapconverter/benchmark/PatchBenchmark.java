@@ -0,0 +1,62 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Diff;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Patch;
+
+// Parses and applies a patch with one changed line per block, spread over a file long enough to hold every block
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatchBenchmark {
+    @Param({"10", "100", "1000"})
+    public int blocks;
+
+    private Path file;
+    private List<String> lines;
+    private Diff diff;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        lines = SyntheticMappings.createEnigmaFile(0, 100, blocks * 8);
+        file = Files.createTempFile("patchbenchmark", ".patch");
+        Files.writeString(file, SyntheticMappings.createPatch("mappings/net/minecraft/class_0.mapping", lines, blocks));
+        diff = Patch.read(file).getDiffs().get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Patch read() throws IOException {
+        return Patch.read(file);
+    }
+
+    @Benchmark
+    public List<String> applyDiff() {
+        return Patch.applyDiff(lines, diff);
+    }
+}
@@ -0,0 +1,85 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.quiltmc.intermediaryhashedmojmapconverter.RemapIndex;
+import org.quiltmc.intermediaryhashedmojmapconverter.Util;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
+
+// Remaps the names of a whole synthetic file through Util.remapObfuscated, in the order the reader visits them
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RemapBenchmark {
+    private static final int MEMBERS = 200;
+
+    @Param({"1000", "10000"})
+    public int classes;
+
+    private RemapIndex index;
+    private List<Visit> visits;
+    private List<String> descriptors;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        index = SyntheticMappings.createIndex(classes, MEMBERS);
+
+        // Spread over the index, so the lookups do not all hit the same entries
+        visits = new ArrayList<>();
+        descriptors = new ArrayList<>();
+        for (int i = 0; i < classes; i += Math.max(1, classes / 20)) {
+            visits.add(new Visit(EnigmaMapping.Type.CLASS, SyntheticMappings.getClassName(i), false, false));
+            for (int j = 0; j < MEMBERS; j++) {
+                if (j % 2 == 0) {
+                    visits.add(new Visit(EnigmaMapping.Type.FIELD, "field_" + j + ";" + SyntheticMappings.getFieldType(i, j, classes), true, false));
+                } else {
+                    String descriptor = SyntheticMappings.getMethodDescriptor(i, j, classes);
+                    visits.add(new Visit(EnigmaMapping.Type.METHOD, "method_" + j + ";" + descriptor, true, true));
+                    descriptors.add(descriptor);
+                }
+            }
+            visits.add(new Visit(EnigmaMapping.Type.CLASS, "class_inner_" + i, false, false));
+        }
+    }
+
+    @Benchmark
+    public void remapObfuscated(Blackhole blackhole) {
+        Deque<RemapIndex.ClassEntry> classStack = new ArrayDeque<>();
+        for (Visit visit : visits) {
+            if (visit.type() == EnigmaMapping.Type.CLASS && !visit.original().startsWith("class_inner_")) {
+                classStack.clear();
+            }
+            blackhole.consume(Util.remapObfuscated(visit.type(), visit.original(), visit.signature(), visit.isMethod(), index, classStack));
+        }
+    }
+
+    @Benchmark
+    public void remapDescriptor(Blackhole blackhole) {
+        for (String descriptor : descriptors) {
+            blackhole.consume(index.remapDescriptor(descriptor));
+        }
+    }
+
+    private record Visit(EnigmaMapping.Type type, String original, boolean signature, boolean isMethod) {
+    }
+}
@@ -0,0 +1,120 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.quiltmc.intermediaryhashedmojmapconverter.RemapIndex;
+
+// Generates Enigma files, the index to remap them and patches against them. Class i is net/minecraft/class_i, mapped
+// to net/minecraft/unmapped/C_i, with an inner class_inner_i and members whose types refer to the following classes.
+final class SyntheticMappings {
+    private SyntheticMappings() {
+    }
+
+    static String getClassName(int index) {
+        return "net/minecraft/class_" + index;
+    }
+
+    static String getMappedClassName(int index) {
+        return "net/minecraft/unmapped/C_" + index;
+    }
+
+    static String getFieldType(int index, int member, int classes) {
+        return "L" + getClassName((index + member) % classes) + ";";
+    }
+
+    static String getMethodDescriptor(int index, int member, int classes) {
+        return "(" + getFieldType(index, member, classes) + "I)V";
+    }
+
+    static RemapIndex createIndex(int classes, int members) {
+        Map<String, RemapIndex.ClassEntry> entries = new HashMap<>();
+        for (int i = 0; i < classes; i++) {
+            entries.put(getClassName(i), new RemapIndex.ClassEntry(getClassName(i), getMappedClassName(i), getMappedClassName(i), Map.of(), Map.of(), Map.of(), Map.of()));
+        }
+        // Member types are remapped once every class is known
+        RemapIndex remapper = new RemapIndex(entries);
+
+        for (int i = 0; i < classes; i++) {
+            Map<String, String> fields = new HashMap<>();
+            Map<String, String> fieldsByName = new HashMap<>();
+            Map<String, String> methods = new HashMap<>();
+            for (int j = 0; j < members; j++) {
+                if (j % 2 == 0) {
+                    String type = getFieldType(i, j, classes);
+                    String mapped = "f_" + j + ";" + remapper.remapDescriptor(type);
+                    fields.put("field_" + j + ";" + type, mapped);
+                    fieldsByName.put("field_" + j, mapped);
+                } else {
+                    String descriptor = getMethodDescriptor(i, j, classes);
+                    methods.put("method_" + j + ";" + descriptor, "m_" + j + ";" + remapper.remapDescriptor(descriptor));
+                }
+            }
+
+            String innerName = "class_inner_" + i;
+            RemapIndex.ClassEntry inner = new RemapIndex.ClassEntry(innerName, "C_inner_" + i, getMappedClassName(i) + "$C_inner_" + i, Map.of(), Map.of(), Map.of(), Map.of());
+            entries.put(getClassName(i) + "$" + innerName, inner);
+            entries.put(getClassName(i), new RemapIndex.ClassEntry(getClassName(i), getMappedClassName(i), getMappedClassName(i), Map.of(innerName, inner), fields, fieldsByName, methods));
+        }
+        return new RemapIndex(entries);
+    }
+
+    // The lines of the Enigma file of a class, named with the names the index remaps from
+    static List<String> createEnigmaFile(int index, int classes, int members) {
+        List<String> lines = new ArrayList<>();
+        lines.add("CLASS " + getClassName(index) + " " + getMappedClassName(index));
+        lines.add("\tCOMMENT Synthetic class " + index);
+        for (int j = 0; j < members; j++) {
+            if (j % 2 == 0) {
+                lines.add("\tFIELD field_" + j + " field" + j + " " + getFieldType(index, j, classes));
+            } else {
+                lines.add("\tMETHOD method_" + j + " method" + j + " " + getMethodDescriptor(index, j, classes));
+                lines.add("\t\tCOMMENT Documentation for method " + j);
+                lines.add("\t\tARG 1 arg" + j);
+            }
+        }
+        lines.add("\tCLASS class_inner_" + index + " Inner" + index);
+        lines.add("\t\tCOMMENT Synthetic inner class");
+        return lines;
+    }
+
+    static String join(List<String> lines) {
+        return String.join("\n", lines) + "\n";
+    }
+
+    // A format-patch style patch changing a line in each of the blocks, spread evenly over the file
+    static String createPatch(String path, List<String> lines, int blocks) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("From 0000000000000000000000000000000000000000 Mon Sep 17 00:00:00 2001\n");
+        builder.append("From: Synthetic <synthetic@example.com>\n");
+        builder.append("Subject: [PATCH] Synthetic changes\n\n");
+        builder.append("---\n");
+        builder.append("diff --git a/").append(path).append(" b/").append(path).append('\n');
+        builder.append("index 0000000..1111111 100644\n");
+        builder.append("--- a/").append(path).append('\n');
+        builder.append("+++ b/").append(path).append('\n');
+
+        int spacing = Math.max(7, lines.size() / blocks);
+        for (int block = 0; block < blocks; block++) {
+            int changed = 3 + block * spacing;
+            if (changed + 3 >= lines.size()) {
+                break;
+            }
+
+            builder.append("@@ -").append(changed - 2).append(",7 +").append(changed - 2).append(",7 @@\n");
+            for (int i = changed - 3; i <= changed + 3; i++) {
+                if (i == changed) {
+                    builder.append('-').append(lines.get(i)).append('\n');
+                    builder.append('+').append(lines.get(i)).append("_patched\n");
+                } else {
+                    builder.append(' ').append(lines.get(i)).append('\n');
+                }
+            }
+        }
+
+        builder.append("-- \n2.33.0\n");
+        return builder.toString();
+    }
+}
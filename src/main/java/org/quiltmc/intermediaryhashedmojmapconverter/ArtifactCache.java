@@ -0,0 +1,225 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+
+// Cache directory shared by every converter process on the machine. Entries are created under a file lock, so only one
+// process downloads or builds each entry, and are published with an atomic move so they are never seen half written.
+// The modification time of an entry is bumped whenever it is used, the least recently used entries are evicted once the
+// cache grows past its maximum size, and entries that have not been used for longer than the maximum age are removed.
+public final class ArtifactCache {
+    private static final String LOCK_DIR = ".locks";
+    // Files about the cache rather than entries of it, never evicted
+    private static final String METADATA_DIR = ".metadata";
+    // File locks are held by the whole JVM, so threads of this process also need to wait on each other
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final long maxSize;
+    private final Duration maxAge;
+
+    public ArtifactCache(Path root, long maxSize, Duration maxAge) {
+        this.root = root;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    // Configured with -Dintermediaryhashedmojmapconverter.cacheDir, .cacheMaxSize (bytes) and .cacheMaxAgeDays
+    public static ArtifactCache getDefault() {
+        return DefaultHolder.CACHE;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path resolve(String entry) {
+        return root.resolve(entry);
+    }
+
+    public Path resolveMetadata(String name) {
+        return root.resolve(METADATA_DIR).resolve(name);
+    }
+
+    // Returns the entry if it exists, marking it as used
+    @Nullable
+    public Path find(String entry) {
+        Path path = resolve(entry);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        touch(path);
+        return path;
+    }
+
+    // Returns the entry, creating it first if needed. The producer writes to a temporary file which is moved into place
+    // once it returns.
+    public Path get(String entry, Producer producer) throws IOException {
+        Path existing = find(entry);
+        if (existing != null) {
+            return existing;
+        }
+
+        Path path = withLock(entry, () -> {
+            // Another process may have created it while we were waiting
+            Path created = find(entry);
+            if (created != null) {
+                return created;
+            }
+
+            Path target = resolve(entry);
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+            try {
+                producer.produce(temp);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return target;
+        });
+
+        evict();
+        return path;
+    }
+
+    public <T> T withLock(String entry, Action<T> action) throws IOException {
+        Path lockFile = getLockFile(entry);
+        ReentrantLock localLock = LOCAL_LOCKS.computeIfAbsent(lockFile.toAbsolutePath(), path -> new ReentrantLock());
+        localLock.lock();
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released when the channel is closed
+            channel.lock();
+            return action.run();
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    // Like withLock, but returns null instead of waiting when the entry is locked, also when this thread holds the lock.
+    // A file lock taken twice by the same JVM throws rather than waits.
+    @Nullable
+    private <T> T tryWithLock(String entry, Action<T> action) throws IOException {
+        Path lockFile = getLockFile(entry);
+        ReentrantLock localLock = LOCAL_LOCKS.computeIfAbsent(lockFile.toAbsolutePath(), path -> new ReentrantLock());
+        if (localLock.isHeldByCurrentThread() || !localLock.tryLock()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.tryLock() == null) {
+                return null;
+            }
+            return action.run();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    private Path getLockFile(String entry) throws IOException {
+        Path lockFile = root.resolve(LOCK_DIR).resolve(entry.replaceAll("[^A-Za-z0-9._-]", "_") + ".lock");
+        Files.createDirectories(lockFile.getParent());
+        return lockFile;
+    }
+
+    // Removes the entries that are too old, then the least recently used ones until the cache fits in its maximum size.
+    // Entries that are locked, by another process or by this thread, are skipped.
+    public void evict() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                if (path.startsWith(root.resolve(LOCK_DIR)) || path.startsWith(root.resolve(METADATA_DIR))) {
+                    continue;
+                }
+
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+
+                Instant lastUsed = attributes.lastModifiedTime().toInstant();
+                if (isTemporary(path)) {
+                    // Still being written by some process, unless it was abandoned long ago
+                    if (lastUsed.isBefore(Instant.now().minus(maxAge))) {
+                        Files.deleteIfExists(path);
+                    }
+                    continue;
+                }
+                files.add(new CachedFile(path, attributes.size(), lastUsed));
+            }
+        }
+        files.sort(Comparator.comparing(CachedFile::lastUsed));
+
+        long size = files.stream().mapToLong(CachedFile::size).sum();
+        Instant oldest = Instant.now().minus(maxAge);
+        for (CachedFile file : files) {
+            if (size <= maxSize && file.lastUsed().isAfter(oldest)) {
+                break;
+            }
+
+            String entry = root.relativize(file.path()).toString().replace(File.separatorChar, '/');
+            Boolean deleted = tryWithLock(entry, () -> Files.deleteIfExists(file.path()));
+            if (Boolean.TRUE.equals(deleted)) {
+                size -= file.size();
+            }
+        }
+    }
+
+    // Entries are written to a temporary file next to them before being moved into place
+    private static boolean isTemporary(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".part") || name.endsWith(".tmp");
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // A read only cache is still usable, its entries are just never evicted
+        }
+    }
+
+    public interface Producer {
+        void produce(Path output) throws IOException;
+    }
+
+    public interface Action<T> {
+        T run() throws IOException;
+    }
+
+    private record CachedFile(Path path, long size, Instant lastUsed) {
+    }
+
+    private static final class DefaultHolder {
+        private static final ArtifactCache CACHE = new ArtifactCache(
+                Path.of(System.getProperty("intermediaryhashedmojmapconverter.cacheDir", Path.of(System.getProperty("user.home"), Util.CACHE_DIR).toString())),
+                Long.getLong("intermediaryhashedmojmapconverter.cacheMaxSize", 4L << 30),
+                Duration.ofDays(Long.getLong("intermediaryhashedmojmapconverter.cacheMaxAgeDays", 90))
+        );
+    }
+}
@@ -0,0 +1,118 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Records the content hash of every converted input file and the output it produced, so later runs against the same
+// mappings only convert new or changed files
+public class ConversionManifest {
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Path path;
+    private final String mappings;
+    // Relative input path -> entry from the previous run
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    // Outputs recorded this run for inputs that then failed, possibly only partly written
+    private final Set<String> abandoned = ConcurrentHashMap.newKeySet();
+
+    private ConversionManifest(Path path, String mappings, Map<String, Entry> previous) {
+        this.path = path;
+        this.mappings = mappings;
+        this.previous = previous;
+    }
+
+    public static Path getPath(Path outputPath) {
+        Path absolute = outputPath.toAbsolutePath();
+        return absolute.resolveSibling(absolute.getFileName() + ".manifest.json");
+    }
+
+    // Entries written for other mappings are ignored, which converts everything again
+    public static ConversionManifest load(Path path, String mappings) throws IOException {
+        if (Files.exists(path)) {
+            Data data = MAPPER.readValue(path.toFile(), Data.class);
+            if (mappings.equals(data.mappings())) {
+                return new ConversionManifest(path, mappings, data.files());
+            }
+        }
+        return new ConversionManifest(path, mappings, Map.of());
+    }
+
+    public static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Returns true when the input has to be converted
+    public boolean isOutdated(String input, String hash, Path outputRoot) {
+        Entry entry = previous.get(input);
+        if (entry == null || !entry.hash().equals(hash) || !Files.exists(outputRoot.resolve(entry.output()))) {
+            return true;
+        }
+
+        current.put(input, entry);
+        return false;
+    }
+
+    public void record(String input, String hash, String output) {
+        current.put(input, new Entry(hash, output));
+    }
+
+    // Keeps the previous output of a file that failed to convert, without its hash so it is retried next time. An
+    // output recorded for it this run is left to finish to delete, unless it is the previous output.
+    public void recordFailure(String input) {
+        Entry recorded = current.remove(input);
+        if (recorded != null) {
+            abandoned.add(recorded.output());
+        }
+        Entry entry = previous.get(input);
+        if (entry != null) {
+            current.put(input, new Entry("", entry.output()));
+        }
+    }
+
+    // Deletes outputs whose input vanished, that are no longer produced or whose input failed for the first time, then
+    // writes the manifest
+    public Set<String> finish(Path outputRoot) throws IOException {
+        Set<String> produced = new HashSet<>();
+        current.values().forEach(entry -> produced.add(entry.output()));
+
+        Set<String> stale = new HashSet<>(abandoned);
+        previous.values().forEach(entry -> stale.add(entry.output()));
+
+        Set<String> deleted = new HashSet<>();
+        for (String output : stale) {
+            if (!produced.contains(output) && Files.deleteIfExists(outputRoot.resolve(output))) {
+                deleted.add(output);
+            }
+        }
+
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        MAPPER.writeValue(temp.toFile(), new Data(mappings, new TreeMap<>(current)));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return deleted;
+    }
+
+    public record Entry(String hash, String output) {
+    }
+
+    record Data(String mappings, Map<String, Entry> files) {
+    }
+}
@@ -0,0 +1,188 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jetbrains.annotations.Nullable;
+
+// Counters and latency histograms for a conversion run. Callers on hot paths look their counter or histogram up once
+// and keep it, recording into them is lock free.
+public final class ConversionMetrics {
+    private static final ConversionMetrics DEFAULT = new ConversionMetrics();
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public static ConversionMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public Timer time(String name) {
+        return histogram(name).start();
+    }
+
+    public void printSummary(PrintStream out) {
+        new TreeMap<>(counters).forEach((name, counter) -> {
+            if (counter.get() != 0) {
+                out.println(name + ": " + counter.get());
+            }
+        });
+        new TreeMap<>(histograms).forEach((name, histogram) -> {
+            if (histogram.getCount() != 0) {
+                out.println(name + ": " + histogram);
+            }
+        });
+    }
+
+    public void writeJson(Path path) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+        Map<String, Object> histogramValues = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.toJson()));
+        json.put("counters", counterValues);
+        json.put("histograms", histogramValues);
+
+        Path absolute = path.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        MAPPER.writeValue(absolute.toFile(), json);
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    // Bucket i counts the durations of up to 2^i nanoseconds, so percentiles are upper bounds within a factor of two
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private volatile long maxNanos;
+        @Nullable
+        private volatile String maxLabel;
+
+        public Timer start() {
+            return new Timer(this, null, System.nanoTime());
+        }
+
+        // The label of the slowest recording is kept, e.g. the file that took the longest
+        public Timer start(@Nullable String label) {
+            return new Timer(this, label, System.nanoTime());
+        }
+
+        public void record(long nanos) {
+            record(nanos, null);
+        }
+
+        public void record(long nanos, @Nullable String label) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(1, nanos) - 1));
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos) {
+                synchronized (this) {
+                    if (nanos > maxNanos) {
+                        maxNanos = nanos;
+                        maxLabel = label;
+                    }
+                }
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return Math.min(1L << i, maxNanos);
+                }
+            }
+            return 0;
+        }
+
+        private Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            long count = getCount();
+            json.put("count", count);
+            json.put("totalMillis", toMillis(getTotalNanos()));
+            json.put("meanMillis", count == 0 ? 0.0 : toMillis(getTotalNanos() / count));
+            json.put("p50Millis", toMillis(getPercentileNanos(0.5)));
+            json.put("p90Millis", toMillis(getPercentileNanos(0.9)));
+            json.put("p99Millis", toMillis(getPercentileNanos(0.99)));
+            json.put("maxMillis", toMillis(maxNanos));
+            if (maxLabel != null) {
+                json.put("max", maxLabel);
+            }
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            long count = getCount();
+            return String.format("%d, %.3f ms total, %.3f ms average, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%s", count,
+                    toMillis(getTotalNanos()), count == 0 ? 0.0 : toMillis(getTotalNanos() / count), toMillis(getPercentileNanos(0.5)),
+                    toMillis(getPercentileNanos(0.9)), toMillis(getPercentileNanos(0.99)), toMillis(maxNanos), maxLabel == null ? "" : " (" + maxLabel + ")");
+        }
+
+        private static double toMillis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+        }
+    }
+
+    public record Timer(Histogram histogram, @Nullable String label, long start) implements AutoCloseable {
+        @Override
+        public void close() {
+            histogram.record(System.nanoTime() - start, label);
+        }
+    }
+}
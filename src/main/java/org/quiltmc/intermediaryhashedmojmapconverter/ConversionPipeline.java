@@ -0,0 +1,233 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.Nullable;
+
+// Converts files in three stages connected by bounded queues: reading and writing run on virtual threads when the
+// runtime has them, while remapping runs on one platform thread per core
+public class ConversionPipeline {
+    private static final Input END_OF_INPUT = new Input(Path.of(""), new byte[0]);
+    private static final Output END_OF_OUTPUT = new Output(Path.of(""), Path.of(""), new byte[0]);
+
+    private final int ioParallelism;
+    private final int remapThreads;
+    private final int queueCapacity;
+    private final Stage readStage = new Stage("read");
+    private final Stage remapStage = new Stage("remap");
+    private final Stage writeStage = new Stage("write");
+
+    public ConversionPipeline(int ioParallelism, int remapThreads, int queueCapacity) {
+        this.ioParallelism = ioParallelism;
+        this.remapThreads = remapThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public static ConversionPipeline create() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ConversionPipeline(Math.max(16, cores * 2), cores, cores * 4);
+    }
+
+    public List<ConversionScheduler.Failure> run(List<Path> files, Remapper remapper) throws InterruptedException {
+        Queue<Path> pending = new ConcurrentLinkedQueue<>(files);
+        BlockingQueue<Input> inputs = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Output> outputs = new ArrayBlockingQueue<>(queueCapacity);
+        Queue<ConversionScheduler.Failure> failures = new ConcurrentLinkedQueue<>();
+
+        ExecutorService io = newIoExecutor();
+        ExecutorService cpu = Executors.newFixedThreadPool(remapThreads);
+        CountDownLatch readersDone = new CountDownLatch(ioParallelism);
+        CountDownLatch remappersDone = new CountDownLatch(remapThreads);
+        CountDownLatch writersDone = new CountDownLatch(ioParallelism);
+
+        try {
+            for (int i = 0; i < ioParallelism; i++) {
+                io.execute(() -> {
+                    try {
+                        Path file;
+                        while ((file = pending.poll()) != null) {
+                            long start = System.nanoTime();
+                            try {
+                                byte[] content = Files.readAllBytes(file);
+                                readStage.completed(start, file);
+                                remapStage.offered(inputs.size());
+                                inputs.put(new Input(file, content));
+                            } catch (InterruptedException e) {
+                                throw e;
+                            } catch (Throwable t) {
+                                readStage.failed();
+                                failures.add(new ConversionScheduler.Failure(file, t));
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        readersDone.countDown();
+                    }
+                });
+            }
+
+            for (int i = 0; i < remapThreads; i++) {
+                cpu.execute(() -> {
+                    try {
+                        Input input;
+                        while ((input = inputs.take()) != END_OF_INPUT) {
+                            long start = System.nanoTime();
+                            try {
+                                Output output = remapper.remap(input.file(), input.content());
+                                remapStage.completed(start, input.file());
+                                if (output != null) {
+                                    writeStage.offered(outputs.size());
+                                    outputs.put(output);
+                                }
+                            } catch (InterruptedException e) {
+                                throw e;
+                            } catch (Throwable t) {
+                                remapStage.failed();
+                                failures.add(new ConversionScheduler.Failure(input.file(), t));
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        remappersDone.countDown();
+                    }
+                });
+            }
+
+            for (int i = 0; i < ioParallelism; i++) {
+                io.execute(() -> {
+                    try {
+                        Output output;
+                        while ((output = outputs.take()) != END_OF_OUTPUT) {
+                            long start = System.nanoTime();
+                            try {
+                                Files.createDirectories(output.output().getParent());
+                                Files.write(output.output(), output.content());
+                                writeStage.completed(start, output.file());
+                            } catch (Throwable t) {
+                                writeStage.failed();
+                                failures.add(new ConversionScheduler.Failure(output.file(), t));
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        writersDone.countDown();
+                    }
+                });
+            }
+
+            // Each stage is told to stop once the one before it has drained
+            readersDone.await();
+            for (int i = 0; i < remapThreads; i++) {
+                inputs.put(END_OF_INPUT);
+            }
+            remappersDone.await();
+            for (int i = 0; i < ioParallelism; i++) {
+                outputs.put(END_OF_OUTPUT);
+            }
+            writersDone.await();
+        } finally {
+            io.shutdownNow();
+            cpu.shutdownNow();
+        }
+
+        return new ArrayList<>(failures);
+    }
+
+    public List<Stage> getStages() {
+        return List.of(readStage, remapStage, writeStage);
+    }
+
+    // Uses a virtual thread per task when available (Java 21, or 19+ with preview features enabled)
+    private static ExecutorService newIoExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public interface Remapper {
+        // Returns null when the file does not need to be written
+        @Nullable
+        Output remap(Path file, byte[] content) throws Exception;
+    }
+
+    public record Input(Path file, byte[] content) {
+    }
+
+    public record Output(Path file, Path output, byte[] content) {
+    }
+
+    public static class Stage {
+        private final String name;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicInteger maxQueued = new AtomicInteger();
+        private final ConversionMetrics.Histogram histogram;
+
+        private Stage(String name) {
+            this.name = name;
+            this.histogram = ConversionMetrics.getDefault().histogram("file." + name);
+        }
+
+        private void completed(long start, Path file) {
+            long nanos = System.nanoTime() - start;
+            busyNanos.add(nanos);
+            completed.increment();
+            histogram.record(nanos, file.toString());
+        }
+
+        private void failed() {
+            failed.increment();
+        }
+
+        // Records the size of the queue feeding this stage
+        private void offered(int queued) {
+            maxQueued.accumulateAndGet(queued + 1, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCompleted() {
+            return completed.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getBusyNanos() {
+            return busyNanos.sum();
+        }
+
+        public int getMaxQueued() {
+            return maxQueued.get();
+        }
+
+        @Override
+        public String toString() {
+            long count = getCompleted();
+            return String.format("%s: %d done, %d failed, %.3f ms average, %d max queued", name, count, getFailed(),
+                    count == 0 ? 0.0 : TimeUnit.NANOSECONDS.toMicros(getBusyNanos()) / 1000.0 / count, getMaxQueued());
+        }
+    }
+}
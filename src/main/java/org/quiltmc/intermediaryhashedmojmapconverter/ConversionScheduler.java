@@ -0,0 +1,89 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Runs one conversion task per file on a fixed pool. Submitting blocks once the queue is full, and awaitCompletion
+// returns as soon as the last task is done.
+public class ConversionScheduler {
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+    private final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+
+    public ConversionScheduler(int threads, int queueCapacity) {
+        // The permits bound the queue, a bounded work queue could still reject a task whose permit was just released
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.permits = new Semaphore(threads + queueCapacity);
+    }
+
+    public static ConversionScheduler create() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new ConversionScheduler(threads, threads * 4);
+    }
+
+    public void submit(Path file, Task task) throws InterruptedException {
+        permits.acquire();
+        inProgress.add(file);
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    failures.add(new Failure(file, t));
+                } finally {
+                    inProgress.remove(file);
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inProgress.remove(file);
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Stops accepting new tasks and waits for the submitted ones, returning the files that failed
+    public List<Failure> awaitCompletion() throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            System.out.println("Waiting for " + inProgress.size() + " files, " + executor.getQueue().size() + " queued");
+        }
+        return new ArrayList<>(failures);
+    }
+
+    public Set<Path> getInProgress() {
+        return inProgress;
+    }
+
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    public static void reportFailures(List<Failure> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        System.err.println("Failed to convert " + failures.size() + " file(s):");
+        for (Failure failure : failures) {
+            System.err.println(failure.file() + ": " + failure.error());
+        }
+    }
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    public record Failure(Path file, Throwable error) {
+    }
+}
@@ -0,0 +1,66 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Bounded memo of remapped descriptors, shared by every thread using the same index. A few thousand descriptors
+// make up most lookups, so once full an arbitrary quarter of the entries is dropped rather than tracking recency.
+public final class DescriptorCache {
+    private static final int DEFAULT_MAX_SIZE = Integer.getInteger("intermediaryhashedmojmapconverter.descriptorCacheSize", 16384);
+
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final ConversionMetrics.Counter hits;
+    private final ConversionMetrics.Counter misses;
+
+    public DescriptorCache() {
+        this(DEFAULT_MAX_SIZE, ConversionMetrics.getDefault());
+    }
+
+    public DescriptorCache(int maxSize, ConversionMetrics metrics) {
+        this.maxSize = maxSize;
+        this.hits = metrics.counter("remap.descriptorCacheHits");
+        this.misses = metrics.counter("remap.descriptorCacheMisses");
+    }
+
+    public String get(String descriptor, UnaryOperator<String> remapper) {
+        String remapped = entries.get(descriptor);
+        if (remapped != null) {
+            hits.increment();
+            return remapped;
+        }
+
+        misses.increment();
+        remapped = remapper.apply(descriptor);
+        if (maxSize > 0) {
+            if (entries.size() >= maxSize) {
+                evict();
+            }
+            entries.put(descriptor, remapped);
+        }
+        return remapped;
+    }
+
+    private void evict() {
+        int target = maxSize - maxSize / 4;
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
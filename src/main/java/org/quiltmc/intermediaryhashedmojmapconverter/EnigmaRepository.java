@@ -0,0 +1,171 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaBinaryReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaBinaryWriter;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.PackedEnigmaClass;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
+
+// Every file of a mapping directory parsed into memory, so passes that need more than one file at a time share a
+// single load. Each file is kept as a PackedEnigmaClass whose names are ids into the repository's symbol table, the
+// parsed tree of a file is dropped as soon as it is packed. Classes, nested ones included, are indexed by their full
+// obfuscated and mapped names (outer$inner).
+public final class EnigmaRepository implements Iterable<EnigmaRepository.Entry> {
+    private final List<Entry> entries;
+    private final Map<String, Entry> byObfuscatedName = new HashMap<>();
+    private final Map<String, Entry> byMappedName = new HashMap<>();
+    private final Map<String, List<Entry>> duplicateMappedNames = new TreeMap<>();
+    private final List<ConversionScheduler.Failure> failures;
+    private final SymbolTable symbols;
+
+    private EnigmaRepository(List<Entry> entries, List<ConversionScheduler.Failure> failures, SymbolTable symbols) {
+        this.entries = entries;
+        this.failures = failures;
+        this.symbols = symbols;
+
+        // Indexed in path order, so which of two files defining the same class wins doesn't depend on load order
+        for (Entry entry : entries) {
+            index(entry, entry.enigmaClass(), "", "");
+        }
+    }
+
+    public static EnigmaRepository load(Path directory) throws IOException, InterruptedException {
+        return load(directory, file -> null, new SymbolTable());
+    }
+
+    // Files that fail to parse are left out and reported by getFailures. The visitors are created per file, as they
+    // may track the class they are in.
+    public static EnigmaRepository load(Path directory, Function<Path, EnigmaReader.ObfuscatedNameVisitor> visitors,
+                                        SymbolTable symbols) throws IOException, InterruptedException {
+        ConversionMetrics.Histogram parse = ConversionMetrics.getDefault().histogram("file.parse");
+        Queue<Entry> loaded = new ConcurrentLinkedQueue<>();
+        ConversionScheduler scheduler = ConversionScheduler.create();
+        for (Path file : Util.walkDirectoryAndCollectFiles(directory)) {
+            scheduler.submit(file, () -> {
+                long start = System.nanoTime();
+                try {
+                    EnigmaFile enigmaFile = EnigmaReader.read(EnigmaTokenizer.open(file), visitors.apply(file), symbols);
+                    loaded.add(new Entry(directory.relativize(file), PackedEnigmaClass.of(enigmaFile.getEnigmaClass(), symbols)));
+                } finally {
+                    parse.record(System.nanoTime() - start, file.toString());
+                }
+            });
+        }
+        List<ConversionScheduler.Failure> failures = scheduler.awaitCompletion();
+
+        List<Entry> entries = new ArrayList<>(loaded);
+        entries.sort(Comparator.comparing(Entry::path));
+        return new EnigmaRepository(Collections.unmodifiableList(entries), failures, symbols);
+    }
+
+    // Loads a repository saved with writeBinary, without parsing any text
+    public static EnigmaRepository loadBinary(Path file, SymbolTable symbols) throws IOException {
+        EnigmaBinaryReader reader = EnigmaBinaryReader.open(file, symbols);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < reader.size(); i++) {
+            entries.add(new Entry(Path.of(reader.getPath(i)), PackedEnigmaClass.of(reader.read(i).getEnigmaClass(), symbols)));
+        }
+        entries.sort(Comparator.comparing(Entry::path));
+        return new EnigmaRepository(Collections.unmodifiableList(entries), List.of(), symbols);
+    }
+
+    private void index(Entry entry, PackedEnigmaClass clazz, String obfuscatedPrefix, String mappedPrefix) {
+        String obfuscatedName = obfuscatedPrefix + clazz.getObfuscatedName();
+        String mappedName = mappedPrefix + (clazz.getMappedName().isEmpty() ? clazz.getObfuscatedName() : clazz.getMappedName());
+        byObfuscatedName.putIfAbsent(obfuscatedName, entry);
+        Entry existing = byMappedName.putIfAbsent(mappedName, entry);
+        if (existing != null && existing != entry) {
+            duplicateMappedNames.computeIfAbsent(mappedName, name -> new ArrayList<>(List.of(existing))).add(entry);
+        }
+
+        for (PackedEnigmaClass nestedClass : clazz.getNestedClasses()) {
+            index(entry, nestedClass, obfuscatedName + "$", mappedName + "$");
+        }
+    }
+
+    // The file defining the class, nested classes give the file of their outermost class
+    @Nullable
+    public Entry getByObfuscatedName(String fullObfuscatedName) {
+        return byObfuscatedName.get(fullObfuscatedName);
+    }
+
+    @Nullable
+    public Entry getByMappedName(String fullMappedName) {
+        return byMappedName.get(fullMappedName);
+    }
+
+    // Mapped names that more than one file maps a class to, with every file doing so
+    public Map<String, List<Entry>> getDuplicateMappedNames() {
+        return Collections.unmodifiableMap(duplicateMappedNames);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        return entries.iterator();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<ConversionScheduler.Failure> getFailures() {
+        return failures;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    // Writes every file to <mapped name>.mapping under the directory, as the converter names its output
+    public List<ConversionScheduler.Failure> export(Path directory) throws InterruptedException {
+        ConversionMetrics.Histogram serialize = ConversionMetrics.getDefault().histogram("file.serialize");
+        ConversionScheduler scheduler = ConversionScheduler.create();
+        for (Entry entry : entries) {
+            Path output = directory.resolve(entry.getOutputName());
+            scheduler.submit(output, () -> {
+                long start = System.nanoTime();
+                try {
+                    entry.enigmaClass().export(output);
+                } finally {
+                    serialize.record(System.nanoTime() - start, entry.path().toString());
+                }
+            });
+        }
+        return scheduler.awaitCompletion();
+    }
+
+    public void writeBinary(Path file) throws IOException {
+        EnigmaBinaryWriter writer = new EnigmaBinaryWriter();
+        for (Entry entry : entries) {
+            writer.add(entry.path().toString(), entry.enigmaClass());
+        }
+        writer.write(file);
+    }
+
+    public record Entry(Path path, PackedEnigmaClass enigmaClass) {
+        public String getOutputName() {
+            return (enigmaClass.getMappedName().isEmpty() ? enigmaClass.getObfuscatedName() : enigmaClass.getMappedName()) + ".mapping";
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.jetbrains.annotations.Nullable;
+
+// One persistent `git cat-file --batch` or `--batch-check` process. Requests are written as soon as they are made and
+// a reader thread completes them in order, so several requests can be in flight at once.
+class GitBatchProcess implements Closeable {
+    private final Path repository;
+    private final boolean contents;
+    private final Process process;
+    private final OutputStream requests;
+    private final InputStream responses;
+    private final BlockingQueue<Request> pending = new LinkedBlockingQueue<>();
+    private final Thread reader;
+    // No more requests are accepted, set by close or once the reader is gone
+    private volatile boolean closed;
+    private boolean shutDown;
+
+    GitBatchProcess(Path repository, boolean contents) throws IOException {
+        this.repository = repository;
+        this.contents = contents;
+        this.process = new ProcessBuilder("git", "cat-file", contents ? "--batch" : "--batch-check")
+                .directory(repository.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        this.requests = new BufferedOutputStream(process.getOutputStream());
+        this.responses = new BufferedInputStream(process.getInputStream());
+        this.reader = new Thread(this::readResponses, "git cat-file " + repository.getFileName());
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    synchronized CompletableFuture<GitObject> request(String object) {
+        CompletableFuture<GitObject> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("git cat-file in " + repository + " is closed"));
+            return future;
+        }
+
+        // Queue the request before writing it, so the reader always finds the request its response belongs to
+        pending.add(new Request(object, future));
+        try {
+            requests.write((object + "\n").getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    int getPending() {
+        return pending.size();
+    }
+
+    private void readResponses() {
+        Request request = null;
+        try {
+            while (true) {
+                request = pending.take();
+                if (request.future() == null) {
+                    break;
+                }
+
+                // The header is either "<object> missing", "<object> ambiguous" or "<sha> <type> <size>". The object
+                // is echoed as requested and may contain spaces, so the header is parsed from the right.
+                String header = readLine();
+                if (header == null) {
+                    request.future().completeExceptionally(new IOException("git cat-file exited unexpectedly in " + repository));
+                    break;
+                }
+                int last = header.lastIndexOf(' ');
+                String status = header.substring(last + 1);
+                if (last == -1 || status.equals("missing") || status.equals("ambiguous")) {
+                    request.future().complete(new GitObject(request.object(), null, "missing", null));
+                    request = null;
+                    continue;
+                }
+                int typeStart = header.lastIndexOf(' ', last - 1);
+                if (typeStart == -1) {
+                    throw new IOException("Unexpected git cat-file header \"" + header + "\" for " + request.object() + " in " + repository);
+                }
+                String sha = header.substring(0, typeStart);
+                String type = header.substring(typeStart + 1, last);
+
+                byte[] content = null;
+                if (contents) {
+                    int size = Integer.parseInt(status);
+                    content = responses.readNBytes(size);
+                    if (content.length != size || responses.read() != '\n') {
+                        request.future().completeExceptionally(new IOException("Unexpected end of output while reading " + request.object() + " from " + repository));
+                        break;
+                    }
+                }
+                request.future().complete(new GitObject(request.object(), sha, type, content));
+                request = null;
+            }
+        } catch (IOException e) {
+            fail(request, e);
+        } catch (RuntimeException e) {
+            // The output can no longer be matched to the requests, so everything still waiting fails rather than hangs
+            fail(request, new IOException("Unable to read the output of git cat-file in " + repository, e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Under the lock request() holds, so no request can be queued after the reader is gone
+        synchronized (this) {
+            closed = true;
+            failPending(new IOException("git cat-file in " + repository + " is closed"));
+        }
+    }
+
+    private void fail(@Nullable Request request, IOException e) {
+        if (request != null && request.future() != null) {
+            request.future().completeExceptionally(e);
+        }
+        failPending(e);
+    }
+
+    private void failPending(IOException e) {
+        Request request;
+        while ((request = pending.poll()) != null) {
+            if (request.future() != null) {
+                request.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    @Nullable
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = responses.read()) != '\n') {
+            if (b == -1) {
+                return null;
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    // Stops git whatever state the reader is in, also when it already stopped on an error with git still running
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (shutDown) {
+                return;
+            }
+            shutDown = true;
+            if (!closed) {
+                closed = true;
+                // Stops the reader once every request before it has been answered
+                pending.add(new Request("", null));
+            }
+        }
+
+        try {
+            requests.close();
+        } catch (IOException e) {
+            // git already exited
+        }
+
+        boolean interrupted = false;
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        // git exits once its input is closed, unless the reader stopped before reading everything it wrote
+        process.destroy();
+        while (true) {
+            try {
+                process.waitFor();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        responses.close();
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Request(String object, @Nullable CompletableFuture<GitObject> future) {
+    }
+
+    // The content is only read by --batch processes, and the sha is null for missing objects
+    record GitObject(String object, @Nullable String sha, String type, byte @Nullable [] content) {
+    }
+}
@@ -0,0 +1,101 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Reads objects straight from the object database of a repository through a small pool of persistent
+// `git cat-file` processes, so files can be read at any commit without checking it out or forking git per read
+public class GitObjectReader implements Closeable {
+    // Measured from the request to its answer, so they include the time spent queued behind other requests
+    private static final ConversionMetrics.Histogram RESOLVE_COMMIT = ConversionMetrics.getDefault().histogram("git.resolveCommit");
+    private static final ConversionMetrics.Histogram READ_BLOB = ConversionMetrics.getDefault().histogram("git.readBlob");
+    private static final ConversionMetrics.Counter MISSING = ConversionMetrics.getDefault().counter("git.missingObjects");
+
+    private final Path repository;
+    private final List<GitBatchProcess> readers = new ArrayList<>();
+    private final GitBatchProcess checker;
+
+    public GitObjectReader(Path repository, int processes) throws IOException {
+        this.repository = repository;
+        try {
+            for (int i = 0; i < processes; i++) {
+                readers.add(new GitBatchProcess(repository, true));
+            }
+            this.checker = new GitBatchProcess(repository, false);
+        } catch (IOException e) {
+            for (GitBatchProcess process : readers) {
+                process.close();
+            }
+            throw e;
+        }
+    }
+
+    public GitObjectReader(Path repository) throws IOException {
+        this(repository, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // Resolves a revision such as "HEAD^" or a tag to the sha of its commit
+    public CompletableFuture<String> resolveCommitAsync(String revision) {
+        ConversionMetrics.Timer timer = RESOLVE_COMMIT.start(revision);
+        return checker.request(revision + "^{commit}").whenComplete((object, error) -> timer.close()).thenApply(object -> {
+            if (object.sha() == null) {
+                MISSING.increment();
+                throw new CompletionException(new IOException("Unable to resolve commit " + revision + " in " + repository));
+            }
+            return object.sha();
+        });
+    }
+
+    // Reads the content of a file at a revision, e.g. readBlobAsync("HEAD^", "mappings/net/minecraft/Foo.mapping")
+    public CompletableFuture<byte[]> readBlobAsync(String revision, String path) {
+        String object = revision + ":" + path;
+        GitBatchProcess process = readers.stream().min(Comparator.comparingInt(GitBatchProcess::getPending)).orElseThrow();
+        ConversionMetrics.Timer timer = READ_BLOB.start(object);
+        return process.request(object).whenComplete((result, error) -> timer.close()).thenApply(result -> {
+            if (result.sha() == null) {
+                MISSING.increment();
+                throw new CompletionException(new IOException("Unable to find " + object + " in " + repository));
+            } else if (!result.type().equals("blob")) {
+                throw new CompletionException(new IOException(object + " in " + repository + " is a " + result.type() + ", not a file"));
+            }
+            return result.content();
+        });
+    }
+
+    public String resolveCommit(String revision) throws IOException {
+        return await(resolveCommitAsync(revision));
+    }
+
+    public byte[] readBlob(String revision, String path) throws IOException {
+        return await(readBlobAsync(revision, path));
+    }
+
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for git", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (GitBatchProcess process : readers) {
+            process.close();
+        }
+        checker.close();
+    }
+}
@@ -1,85 +1,168 @@
 package org.quiltmc.intermediaryhashedmojmapconverter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
-import org.cadixdev.bombe.type.signature.MethodSignature;
-import org.cadixdev.lorenz.MappingSet;
-import org.cadixdev.lorenz.model.ClassMapping;
-import org.cadixdev.lorenz.model.FieldMapping;
-import org.cadixdev.lorenz.model.MethodMapping;
+
+import org.jetbrains.annotations.Nullable;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaStreamRemapper;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
 
 public class IntermediaryToHashedMojmapConverter {
-    public static void main(String[] args) throws IOException {
-        if (args.length != 6) {
-            System.err.println("Usage is <inputpath> <inputmappings> <inputnamespace> <outputpath> <outputmappings> <outputnamespace>");
+    private static final Set<String> OPTIONS = Set.of("--sorted", "--incremental");
+    private static final String METRICS_JSON = "--metrics-json=";
+    private static final ConversionMetrics.Counter UP_TO_DATE = ConversionMetrics.getDefault().counter("files.upToDate");
+    private static final ConversionMetrics.Histogram PARSE = ConversionMetrics.getDefault().histogram("file.parse");
+    private static final ConversionMetrics.Histogram SERIALIZE = ConversionMetrics.getDefault().histogram("file.serialize");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 6) {
+            System.err.println("Usage is <inputpath> <inputmappings> <inputnamespace> <outputpath> <outputmappings> <outputnamespace> [--sorted] [--incremental] [--metrics-json=<path>]");
+            System.err.println("--sorted without --incremental holds every parsed input file in memory until the output is written");
             System.exit(-1);
         }
 
+        Set<String> options = new HashSet<>(Arrays.asList(args).subList(6, args.length));
+        Path metricsJson = null;
+        for (String option : options) {
+            if (option.startsWith(METRICS_JSON)) {
+                metricsJson = Path.of(option.substring(METRICS_JSON.length()));
+            } else if (!OPTIONS.contains(option)) {
+                System.err.println("Unknown option " + option);
+                System.exit(-1);
+            }
+        }
+        boolean sorted = options.contains("--sorted");
+
         Path inputPath = Path.of(args[0]);
         Path outputPath = Path.of(args[3]);
         Files.createDirectories(outputPath);
 
-        MappingSet inputToOutput = Util.createInputToOutputMappings(args[1], args[2], args[4], args[5]);
-
-        ExecutorService executor = Executors.newFixedThreadPool(32);
-
-        Set<Path> inProgress = new HashSet<>();
-
-        Files.walkFileTree(inputPath, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                inProgress.add(file);
-                executor.execute(() -> {
-                    try {
-                        remapAndOutputFile(file, outputPath, inputToOutput);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    inProgress.remove(file);
-                });
-                return super.visitFile(file, attrs);
-            }
-        });
+        RemapIndex inputToOutput = Util.createInputToOutputIndex(args[1], args[2], args[4], args[5]);
 
+        ConversionManifest manifest = null;
+        if (options.contains("--incremental")) {
+            // The snapshot index was just updated by createInputToOutputIndex, so this resolves to the same builds
+            String mappings = RemapIndexCache.createKey(Util.resolveArtifact(args[1]), args[2], Util.resolveArtifact(args[4]), args[5]) + (sorted ? "|sorted" : "");
+            manifest = ConversionManifest.load(ConversionManifest.getPath(outputPath), mappings);
+        }
 
-        try {
-            boolean successful = executor.awaitTermination(100, TimeUnit.SECONDS);
-            if (!successful) {
-                System.err.println("Executor failed to stop.");
-                inProgress.forEach(System.out::println);
+        // Files are read and written on I/O threads while the remapping itself runs on one thread per core
+        ConversionPipeline pipeline = ConversionPipeline.create();
+        List<ConversionScheduler.Failure> failures = convertDirectory(pipeline, inputPath, outputPath, inputToOutput, sorted, manifest);
+
+        ConversionScheduler.reportFailures(failures);
+        if (!sorted || manifest != null) {
+            // The in-memory sorted conversion does not go through the pipeline
+            pipeline.getStages().forEach(System.out::println);
+        }
+
+        if (manifest != null) {
+            // A failed write replaces the entry recorded when its file was remapped
+            for (ConversionScheduler.Failure failure : failures) {
+                manifest.recordFailure(inputPath.relativize(failure.file()).toString());
+            }
+            for (String deleted : manifest.finish(outputPath)) {
+                System.out.println("Deleted " + deleted);
             }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        }
+
+        ConversionMetrics.getDefault().printSummary(System.out);
+        if (metricsJson != null) {
+            ConversionMetrics.getDefault().writeJson(metricsJson);
         }
     }
 
-    private static void remapAndOutputFile(Path inputPath, Path outputPath, MappingSet inputToOutput) throws IOException {
-        Deque<ClassMapping<?, ?>> mappings = new ArrayDeque<>();
+    // Files the manifest knows to be up to date are skipped
+    public static List<ConversionScheduler.Failure> convertDirectory(ConversionPipeline pipeline, Path inputPath, Path outputPath, RemapIndex inputToOutput,
+                                                                     boolean sorted, @Nullable ConversionManifest manifest) throws IOException, InterruptedException {
+        if (sorted && manifest == null) {
+            return convertRepository(inputPath, outputPath, inputToOutput);
+        }
+
+        return pipeline.run(Util.walkDirectoryAndCollectFiles(inputPath), (file, content) -> {
+            String input = inputPath.relativize(file).toString();
+            String hash = null;
+            if (manifest != null) {
+                hash = ConversionManifest.hash(content);
+                if (!manifest.isOutdated(input, hash, outputPath)) {
+                    UP_TO_DATE.increment();
+                    return null;
+                }
+            }
 
-        EnigmaFile transformed = EnigmaReader.readFile(inputPath, (type, original, signature, isMethod) -> {
-            try {
-                return Util.remapObfuscated(type, original, signature, isMethod, inputToOutput, mappings);
-            } catch (Exception e) {
-                System.err.println("Error finding mapping for " + original + " with type " + type + " in file " + inputPath);
-                return original;
+            ConversionPipeline.Output output = remapFile(file, content, outputPath, inputToOutput, sorted);
+            if (manifest != null) {
+                manifest.record(input, hash, outputPath.relativize(output.output()).toString());
             }
+            return output;
         });
+    }
+
+    // Sorted output needs every file parsed anyway, so the whole directory is remapped into memory and written out from there.
+    // That trades memory, every file of the input at once, for a single parse. Incremental runs keep converting file by
+    // file, since they skip most files, and so does PatchFileConverter, which only reads the files its patches touch.
+    private static List<ConversionScheduler.Failure> convertRepository(Path inputPath, Path outputPath, RemapIndex inputToOutput) throws IOException, InterruptedException {
+        EnigmaRepository repository;
+        long start = System.nanoTime();
+        try {
+            // The visitors share the repository's table, so the remapped class names are interned where they are made
+            SymbolTable symbols = new SymbolTable();
+            repository = EnigmaRepository.load(inputPath, file -> new RemapVisitor(inputToOutput, "file " + file, symbols), symbols);
+        } finally {
+            ConversionMetrics.getDefault().histogram("repository.load").record(System.nanoTime() - start);
+        }
+
+        List<ConversionScheduler.Failure> failures = new ArrayList<>(repository.getFailures());
+        start = System.nanoTime();
+        try {
+            failures.addAll(repository.export(outputPath));
+        } finally {
+            ConversionMetrics.getDefault().histogram("repository.export").record(System.nanoTime() - start);
+        }
+        return failures;
+    }
+
+    private static ConversionPipeline.Output remapFile(Path inputPath, byte[] content, Path outputPath, RemapIndex inputToOutput, boolean sorted) throws IOException {
+        RemapVisitor visitor = new RemapVisitor(inputToOutput, "file " + inputPath);
+        EnigmaTokenizer tokenizer = new EnigmaTokenizer(ByteBuffer.wrap(content));
+
+        if (!sorted) {
+            // Remap the file straight into a buffer, keeping the member order of the input
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + content.length / 8);
+            String[] className = new String[1];
+            EnigmaStreamRemapper.remap(tokenizer, visitor, name -> {
+                className[0] = name;
+                return out;
+            });
+            return new ConversionPipeline.Output(inputPath, outputPath.resolve(className[0] + ".mapping"), out.toByteArray());
+        }
+
+        EnigmaFile transformed;
+        long start = System.nanoTime();
+        try {
+            transformed = EnigmaReader.read(tokenizer, visitor);
+        } finally {
+            PARSE.record(System.nanoTime() - start, inputPath.toString());
+        }
 
         String name = transformed.getEnigmaClass().getMappedName();
-        transformed.export(outputPath.resolve((name.isEmpty() ? transformed.getEnigmaClass().getObfuscatedName() : name) + ".mapping"));
+        Path output = outputPath.resolve((name.isEmpty() ? transformed.getEnigmaClass().getObfuscatedName() : name) + ".mapping");
+        start = System.nanoTime();
+        try {
+            return new ConversionPipeline.Output(inputPath, output, transformed.toBytes());
+        } finally {
+            SERIALIZE.record(System.nanoTime() - start, inputPath.toString());
+        }
     }
 }
@@ -1,13 +1,37 @@
 package org.quiltmc.intermediaryhashedmojmapconverter;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
@@ -19,55 +43,297 @@ public final class MavenFileDownloader {
             "https://maven.quiltmc.org/repository/snapshot",
             "https://maven.quiltmc.org/repository/fabricmc"
     );
+    // Checksum file extension -> digest algorithm, strongest first
+    private static final Map<String, String> CHECKSUMS = new LinkedHashMap<>(Map.of("sha256", "SHA-256", "sha1", "SHA-1"));
+    public static final Transformer COPY = InputStream::transferTo;
+    private static final Path LOCAL_REPOSITORY = Path.of(System.getProperty("user.home"), ".m2", "repository");
+    // How long a resolved snapshot is used before looking for a newer build, when online
+    private static final Duration SNAPSHOT_MAX_AGE = Duration.ofMinutes(Long.getLong("intermediaryhashedmojmapconverter.snapshotMaxAgeMinutes", 60));
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
 
     public static void downloadFile(MavenArtifact mavenArtifact, Path output) throws IOException {
-        for (String maven : MAVEN_REPOSITORIES) {
-            URL url;
-            if (mavenArtifact.isSnapshot()) {
-                if (mavenArtifact.isUniqueSnapshot()) {
-                    url = new URL(maven + "/" + mavenArtifact.getMavenPath() + "/" + mavenArtifact.getArtifactName() + ".jar");
-                } else {
-                    URL metadataURL = new URL(maven + "/" + mavenArtifact.getMavenMetadataPath());
-                    JsonNode metadata;
-                    try {
-                        metadata = new XmlMapper().readTree(metadataURL).get("versioning").get("snapshot");
-                    } catch (Exception e) {
-                        continue;
-                    }
-                    String recentVersion = mavenArtifact.version().substring(0, mavenArtifact.version().length() - 9) + "-" + metadata.get("timestamp").asText() + "-" + metadata.get("buildNumber").asText();
-                    url = new URL(maven + "/" + mavenArtifact.getMavenPath() + "/" + mavenArtifact.withVersion(recentVersion).getArtifactName() + ".jar");
+        downloadFile(mavenArtifact, output, MAVEN_REPOSITORIES, COPY);
+    }
+
+    public static void downloadFile(MavenArtifact mavenArtifact, Path output, List<String> repositories) throws IOException {
+        downloadFile(mavenArtifact, output, repositories, COPY);
+    }
+
+    public static void downloadFile(MavenArtifact mavenArtifact, Path output, List<String> repositories, Transformer transformer) throws IOException {
+        downloadFile(mavenArtifact, output, repositories, transformer, Mode.getDefault());
+    }
+
+    public static void downloadFile(MavenArtifact mavenArtifact, Path output, List<String> repositories, Transformer transformer, Mode mode) throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        if (mode != Mode.ONLINE && copyLocal(mavenArtifact, output, transformer)) {
+            return;
+        }
+
+        if (mode == Mode.OFFLINE) {
+            throw new IOException("Unable to find artifact " + mavenArtifact + " in the local repository while offline");
+        }
+        IOException failure = new IOException("Unable to find artifact " + mavenArtifact);
+        if (downloadRemote(mavenArtifact, output, repositories, transformer, failure)) {
+            return;
+        }
+        if (mode == Mode.ONLINE && copyLocal(mavenArtifact, output, transformer)) {
+            return;
+        }
+        throw failure;
+    }
+
+    // Resolves a non unique snapshot to its latest build, other artifacts are returned as is. Resolutions are kept in
+    // the index: online they are reused while they are recent, otherwise they are reused as long as they exist.
+    public static MavenArtifact resolveSnapshot(MavenArtifact mavenArtifact, List<String> repositories, SnapshotIndex index, Mode mode) throws IOException {
+        if (!mavenArtifact.isNonUniqueSnapshot()) {
+            return mavenArtifact;
+        }
+
+        SnapshotIndex.Entry entry = index.get(mavenArtifact);
+        if (entry != null && (mode != Mode.ONLINE || entry.isFresh(SNAPSHOT_MAX_AGE))) {
+            return mavenArtifact.withVersion(entry.version());
+        } else if (mode == Mode.OFFLINE) {
+            // The local repository keeps snapshots under their non unique version
+            return mavenArtifact;
+        }
+
+        List<CompletableFuture<String>> lookups = repositories.stream().map(repository -> fetchLatestSnapshot(repository, mavenArtifact)).toList();
+        String version;
+        try {
+            version = firstSuccess(lookups).join();
+        } catch (CompletionException e) {
+            // An outdated build is still better than none
+            return entry != null ? mavenArtifact.withVersion(entry.version()) : mavenArtifact;
+        }
+
+        index.put(mavenArtifact, new SnapshotIndex.Entry(version, System.currentTimeMillis()));
+        return mavenArtifact.withVersion(version);
+    }
+
+    // Asks every repository for the checksum of the artifact at once, then downloads it from the first one that had
+    // it. The file is streamed through the transformer to a temporary file next to the output, and only moved there once
+    // the checksum of the downloaded file matches.
+    private static boolean downloadRemote(MavenArtifact mavenArtifact, Path output, List<String> repositories, Transformer transformer, IOException failure) throws IOException {
+        BlockingQueue<CompletableFuture<Source>> answered = new LinkedBlockingQueue<>();
+        List<CompletableFuture<Source>> probes = new ArrayList<>();
+        for (String repository : repositories) {
+            CompletableFuture<Source> probe = probe(repository, mavenArtifact);
+            probes.add(probe);
+            probe.whenComplete((source, error) -> answered.add(probe));
+        }
+
+        try {
+            for (int i = 0; i < probes.size(); i++) {
+                CompletableFuture<Source> probe = answered.take();
+                try {
+                    download(probe.join(), output, transformer);
+                    return true;
+                } catch (CompletionException e) {
+                    failure.addSuppressed(e.getCause());
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
                 }
-            } else {
-                url = new URL(maven + "/" + mavenArtifact.getMavenArtifactPath(".jar"));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + mavenArtifact, e);
+        } finally {
+            probes.forEach(probe -> probe.cancel(true));
+        }
+        return false;
+    }
 
-            try (InputStream stream = url.openStream()) {
-                if (!Files.exists(output)) {
-                    Files.createDirectories(output.getParent());
-                    Files.createFile(output);
-                }
-                Files.write(output, stream.readAllBytes());
+    // check mavenLocal(), where a unique snapshot may also be installed under its non unique version
+    private static boolean copyLocal(MavenArtifact mavenArtifact, Path output, Transformer transformer) throws IOException {
+        List<MavenArtifact> candidates = mavenArtifact.isUniqueSnapshot() ? List.of(mavenArtifact, mavenArtifact.withVersion(mavenArtifact.getNonUniqueSnapshot())) : List.of(mavenArtifact);
+        for (MavenArtifact candidate : candidates) {
+            Path local = LOCAL_REPOSITORY.resolve(candidate.getMavenArtifactPath(".jar"));
+            if (Files.exists(local)) {
+                copyAtomically(() -> Files.newInputStream(local), output, transformer, null);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CompletableFuture<Source> probe(String repository, MavenArtifact mavenArtifact) {
+        CompletableFuture<MavenArtifact> jar = mavenArtifact.isNonUniqueSnapshot()
+                // The jar of a non unique snapshot is named after its latest build
+                ? fetchLatestSnapshot(repository, mavenArtifact).thenApply(mavenArtifact::withVersion)
+                : CompletableFuture.completedFuture(mavenArtifact);
+
+        return jar.thenCompose(artifact -> fetchChecksum(URI.create(repository + "/" + artifact.getMavenArtifactPath(".jar")), new ArrayList<>(CHECKSUMS.keySet()), 0));
+    }
+
+    private static CompletableFuture<String> fetchLatestSnapshot(String repository, MavenArtifact mavenArtifact) {
+        URI metadataUri = URI.create(repository + "/" + mavenArtifact.getMavenMetadataPath());
+        return fetch(metadataUri).thenApply(bytes -> {
+            JsonNode metadata;
+            try {
+                metadata = new XmlMapper().readTree(bytes).get("versioning").get("snapshot");
             } catch (IOException e) {
-                continue;
+                throw new CompletionException(e);
             }
-            return;
+            return mavenArtifact.version().substring(0, mavenArtifact.version().length() - 9) + "-" + metadata.get("timestamp").asText() + "-" + metadata.get("buildNumber").asText();
+        });
+    }
+
+    // Completes with the first future to succeed, or with the last error once all of them failed
+    private static <T> CompletableFuture<T> firstSuccess(List<CompletableFuture<T>> futures) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (futures.isEmpty()) {
+            result.completeExceptionally(new IOException("No repositories to ask"));
         }
 
-        // check mavenLocal()
+        AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (remaining.decrementAndGet() == 0) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static CompletableFuture<Source> fetchChecksum(URI jar, List<String> extensions, int index) {
+        String extension = extensions.get(index);
+        return fetch(URI.create(jar + "." + extension))
+                // Checksum files hold the hex digest, sometimes followed by the file name
+                .thenApply(bytes -> new Source(jar, CHECKSUMS.get(extension), new String(bytes, StandardCharsets.UTF_8).trim().split("\\s+")[0].toLowerCase(Locale.ROOT)))
+                .exceptionallyCompose(error -> index + 1 < extensions.size() ? fetchChecksum(jar, extensions, index + 1) : CompletableFuture.failedFuture(error));
+    }
+
+    private static void download(Source source, Path output, Transformer transformer) throws IOException {
+        MessageDigest digest;
         try {
-            Path local = Path.of(System.getProperty("user.home"), ".m2", "repository", mavenArtifact.getMavenArtifactPath(".jar"));
-            if (!Files.exists(output)) {
-                Files.createDirectories(output.getParent());
-                Files.createFile(output);
+            digest = MessageDigest.getInstance(source.algorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        // The checksum is computed while the file is being written
+        copyAtomically(() -> new DigestInputStream(open(source.jar()), digest), output, transformer, () -> {
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if (!actual.equals(source.checksum())) {
+                throw new IOException("Checksum mismatch for " + source.jar() + ": expected " + source.checksum() + ", got " + actual);
             }
+        });
+    }
 
-            Files.write(output, Files.readAllBytes(local));
-            return;
-        } catch (Exception e) {
-            e.printStackTrace();
+    // The input is only opened once the temporary file exists, so it is always closed
+    private static void copyAtomically(Input source, Path output, Transformer transformer, @Nullable Verifier verifier) throws IOException {
+        Path temp = Files.createTempFile(output.toAbsolutePath().getParent(), output.getFileName().toString(), ".part");
+        try {
+            try (InputStream input = source.open(); OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                transformer.transform(input, stream);
+                // The transformer may not need the whole file, but the checksum does
+                input.transferTo(OutputStream.nullOutputStream());
+            }
+
+            if (verifier != null) {
+                verifier.verify();
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static CompletableFuture<byte[]> fetch(URI uri) {
+        if ("file".equals(uri.getScheme())) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Files.readAllBytes(Path.of(uri));
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
         }
 
-        throw new RuntimeException("Unable to find artifact " + mavenArtifact);
+        return CLIENT.sendAsync(HttpRequest.newBuilder(uri).timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new CompletionException(new IOException("Got status " + response.statusCode() + " for " + uri));
+            }
+            return response.body();
+        });
+    }
+
+    static InputStream open(URI uri) throws IOException {
+        if ("file".equals(uri.getScheme())) {
+            return Files.newInputStream(Path.of(uri));
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = CLIENT.send(HttpRequest.newBuilder(uri).timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting " + uri, e);
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Got status " + response.statusCode() + " for " + uri);
+        }
+        return response.body();
+    }
+
+    // Extracts the first entry of a jar whose name ends with the extension, optionally gzipped
+    public static Transformer extractEntry(String extension, boolean compress) {
+        return (input, output) -> {
+            // Not closed, the input belongs to the caller
+            ZipInputStream zip = new ZipInputStream(input);
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (!entry.getName().endsWith(extension)) {
+                    continue;
+                }
+
+                if (compress) {
+                    GZIPOutputStream gzip = new GZIPOutputStream(output);
+                    zip.transferTo(gzip);
+                    gzip.finish();
+                } else {
+                    zip.transferTo(output);
+                }
+                return;
+            }
+            throw new IOException("No " + extension + " entry found");
+        };
+    }
+
+    public enum Mode {
+        // Remote repositories first, then the local repository
+        ONLINE,
+        // The local repository first, and resolved snapshots are reused however old they are
+        LOCAL_FIRST,
+        // Never touches the network
+        OFFLINE;
+
+        // Configured with -Dintermediaryhashedmojmapconverter.resolution=online|local-first|offline
+        public static Mode getDefault() {
+            return valueOf(System.getProperty("intermediaryhashedmojmapconverter.resolution", "online").toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    public interface Transformer {
+        void transform(InputStream input, OutputStream output) throws IOException;
+    }
+
+    private interface Input {
+        InputStream open() throws IOException;
+    }
+
+    private interface Verifier {
+        void verify() throws IOException;
+    }
+
+    private record Source(URI jar, String algorithm, String checksum) {
     }
 
     public record MavenArtifact(String group, String artifactId, String version, @Nullable String classifier, Matcher uniqueSnapshotVersionMatcher) {
@@ -90,7 +356,7 @@ public final class MavenFileDownloader {
         }
 
         public MavenArtifact withVersion(String newVersion) {
-            return new MavenArtifact(classifier, artifactId, newVersion, classifier, UNIQUE_SNAPSHOT.matcher(newVersion));
+            return new MavenArtifact(group, artifactId, newVersion, classifier, UNIQUE_SNAPSHOT.matcher(newVersion));
         }
 
         public boolean isSnapshot() {
@@ -0,0 +1,79 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.Nullable;
+
+// An in-memory layer of changes over an output directory. Forked layers read through to their parent and only apply
+// their changes to it on commit, the root layer writes its changes to disk on commit.
+public class OutputTree {
+    @Nullable
+    private final Path root;
+    @Nullable
+    private final OutputTree parent;
+    // Relative path -> new content, or empty if the file was deleted
+    private final Map<String, Optional<String>> changes = new ConcurrentHashMap<>();
+
+    private OutputTree(@Nullable Path root, @Nullable OutputTree parent) {
+        this.root = root;
+        this.parent = parent;
+    }
+
+    public static OutputTree of(Path root) {
+        return new OutputTree(root, null);
+    }
+
+    public OutputTree fork() {
+        return new OutputTree(null, this);
+    }
+
+    // Returns null if the file does not exist
+    @Nullable
+    public String read(String path) throws IOException {
+        Optional<String> change = changes.get(path);
+        if (change != null) {
+            return change.orElse(null);
+        } else if (parent != null) {
+            return parent.read(path);
+        }
+
+        Path file = root.resolve(path);
+        return Files.exists(file) ? Files.readString(file) : null;
+    }
+
+    public boolean exists(String path) throws IOException {
+        Optional<String> change = changes.get(path);
+        if (change != null) {
+            return change.isPresent();
+        }
+        return parent != null ? parent.exists(path) : Files.exists(root.resolve(path));
+    }
+
+    public void write(String path, String content) {
+        changes.put(path, Optional.of(content));
+    }
+
+    public void delete(String path) {
+        changes.put(path, Optional.empty());
+    }
+
+    public void commit() throws IOException {
+        for (Map.Entry<String, Optional<String>> change : changes.entrySet()) {
+            if (parent != null) {
+                parent.changes.put(change.getKey(), change.getValue());
+            } else if (change.getValue().isPresent()) {
+                Path file = root.resolve(change.getKey());
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, change.getValue().get());
+            } else {
+                Files.deleteIfExists(root.resolve(change.getKey()));
+            }
+        }
+        changes.clear();
+    }
+}
@@ -1,88 +1,158 @@
 package org.quiltmc.intermediaryhashedmojmapconverter;
 
-import org.cadixdev.bombe.type.signature.MethodSignature;
-import org.cadixdev.lorenz.MappingSet;
-import org.cadixdev.lorenz.model.ClassMapping;
-import org.cadixdev.lorenz.model.FieldMapping;
-import org.cadixdev.lorenz.model.MethodMapping;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
 import org.quiltmc.intermediaryhashedmojmapconverter.patch.Diff;
 import org.quiltmc.intermediaryhashedmojmapconverter.patch.Patch;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.PatchApplier;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 public class PatchFileConverter {
-    public static void main(String[] args) throws IOException {
-        if (args.length != 8) {
-            System.err.println("Usage is <patchespath> <inputmappings> <inputnamespace> <outputpath> <outputmappings> <outputnamespace> <inputrepo>");
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 7) {
+            System.err.println("Usage is <patchespath> <inputmappings> <inputnamespace> <outputpath> <outputmappings> <outputnamespace> <inputrepo> [--emit-patches] [--fuzz=<lines>] [--metrics-json=<path>]");
             System.exit(-1);
         }
 
+        boolean emitPatches = false;
+        int fuzz = PatchApplier.DEFAULT_FUZZ;
+        Path metricsJson = null;
+        for (String option : Arrays.asList(args).subList(7, args.length)) {
+            if (option.equals("--emit-patches")) {
+                emitPatches = true;
+            } else if (option.startsWith("--fuzz=")) {
+                fuzz = Integer.parseInt(option.substring("--fuzz=".length()));
+            } else if (option.startsWith("--metrics-json=")) {
+                metricsJson = Path.of(option.substring("--metrics-json=".length()));
+            } else {
+                System.err.println("Unknown option " + option);
+                System.exit(-1);
+            }
+        }
+
         Path patchesPath = Path.of(args[0]);
         Path outputPath = Path.of(args[3]);
 
-        MappingSet inputToOutput = Util.createInputToOutputMappings(args[1], args[2], args[4], args[5]);
-
-        Path inputRepo = Path.of(args[6]);
-
-        // Check for uncommitted changes in the input repo
-        String uncommittedInputRepoChanges = Util.getUncommittedChanges(inputRepo);
-        if (!uncommittedInputRepoChanges.isEmpty()) {
-            System.err.println("You have uncommitted changes in the input repository. Please commit or stash them before continuing\n"
-                    + uncommittedInputRepoChanges);
-            System.exit(-1);
+        RemapIndex inputToOutput = Util.createInputToOutputIndex(args[1], args[2], args[4], args[5]);
+
+        // Files are read from the object database of the input repo, so its working tree is never touched
+        try (GitObjectReader inputRepo = new GitObjectReader(Path.of(args[6]))) {
+            if (emitPatches) {
+                // Every patch is remapped on its own into a patch for the output repo, so they can all run in parallel
+                PatchRemapper remapper = new PatchRemapper(inputToOutput);
+                ConversionMetrics.Histogram remapTime = ConversionMetrics.getDefault().histogram("patch.remap");
+                ConversionScheduler scheduler = ConversionScheduler.create();
+                for (Path patchFile : Util.walkDirectoryAndCollectFiles(patchesPath)) {
+                    scheduler.submit(patchFile, () -> {
+                        Path output = outputPath.resolve(patchesPath.relativize(patchFile));
+                        Files.createDirectories(output.getParent());
+                        long start = System.nanoTime();
+                        try {
+                            Files.writeString(output, remapPatch(Patch.read(patchFile), remapper, inputRepo).export());
+                        } finally {
+                            remapTime.record(System.nanoTime() - start, patchFile.toString());
+                        }
+                    });
+                }
+                ConversionScheduler.reportFailures(scheduler.awaitCompletion());
+            } else {
+                PatchSeries series = PatchSeries.read(Util.walkDirectoryAndCollectFiles(patchesPath));
+                OutputTree output = OutputTree.of(outputPath);
+                PatchApplier applier = new PatchApplier(fuzz);
+                ConversionMetrics.Histogram convertTime = ConversionMetrics.getDefault().histogram("patch.convert");
+                List<ConversionScheduler.Failure> failures = series.convert(output, (patchFile, patch, layer) -> {
+                    long start = System.nanoTime();
+                    try {
+                        PatchFileConverter.convertPatch(patchFile, patch, inputToOutput, inputRepo, applier, layer);
+                    } finally {
+                        convertTime.record(System.nanoTime() - start, patchFile.toString());
+                    }
+                }, Runtime.getRuntime().availableProcessors());
+                ConversionScheduler.reportFailures(failures);
+
+                // Write the converted patches to disk
+                output.commit();
+            }
         }
 
-        // Get what HEAD is pointing to
-        String inputRepoHead = Util.getRepoHead(inputRepo);
-
-        List<Path> patchFiles = Util.walkDirectoryAndCollectFiles(patchesPath);
-
-        Set<Path> inProgress = new HashSet<>();
-        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ConversionMetrics.getDefault().printSummary(System.out);
+        if (metricsJson != null) {
+            ConversionMetrics.getDefault().writeJson(metricsJson);
+        }
+    }
 
-        for (Path patchFile : patchFiles) {
-            inProgress.add(patchFile);
-            executor.execute(() -> {
-                try {
-                    PatchFileConverter.convertFile(patchFile, inputToOutput, inputRepo, outputPath);
-                } catch (Throwable t) {
-                    System.err.println("Failed to convert " + patchFile);
-                    t.printStackTrace();
+    public static Patch remapPatch(Patch patch, PatchRemapper remapper, GitObjectReader inputRepo) throws IOException {
+        // Only blocks in the middle of a file need its source, for the classes enclosing them
+        String parent = null;
+        List<CompletableFuture<byte[]>> sources = new ArrayList<>();
+        for (Diff diff : patch.getDiffs()) {
+            if (PatchRemapper.needsSourceLines(diff)) {
+                if (parent == null) {
+                    parent = inputRepo.resolveCommit(getCommit(patch) + "^");
                 }
-                inProgress.remove(patchFile);
-            });
+                sources.add(inputRepo.readBlobAsync(parent, diff.getSrc()));
+            } else {
+                sources.add(null);
+            }
         }
 
-        try {
-            boolean successful = executor.awaitTermination(100, TimeUnit.SECONDS);
-            if (!successful) {
-                System.err.println("Executor failed to stop.");
-                inProgress.forEach(System.out::println);
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        List<Diff> diffs = new ArrayList<>();
+        for (int i = 0; i < patch.getDiffs().size(); i++) {
+            List<String> sourceLines = sources.get(i) != null ? toLines(GitObjectReader.await(sources.get(i))) : null;
+            diffs.add(remapper.remap(patch.getDiffs().get(i), sourceLines));
         }
+        return new Patch(patch.getHeader(), diffs, patch.getFooter());
+    }
+
+    private static String getCommit(Patch patch) {
+        String fromLine = patch.getHeader().get(0);
+        return fromLine.substring(fromLine.lastIndexOf("From ") + 5, fromLine.lastIndexOf(" Mon Sep 17 00:00:00 2001"));
+    }
 
-        // Reset the input repo to how it was before
-        Util.runGitCommand(inputRepo, "checkout", inputRepoHead);
+    private static List<String> toLines(byte[] content) {
+        return new String(content, StandardCharsets.UTF_8).lines().collect(Collectors.toList());
     }
 
-    public static void convertFile(Path patchFile, MappingSet inputToOutput, Path inputRepo, Path outputPath) throws IOException {
-        Patch patch = Patch.read(patchFile);
+    public static void convertFile(Path patchFile, RemapIndex inputToOutput, GitObjectReader inputRepo, OutputTree output) throws IOException {
+        convertPatch(patchFile, Patch.read(patchFile), inputToOutput, inputRepo, new PatchApplier(PatchApplier.DEFAULT_FUZZ), output);
+    }
 
-        for (Diff diff : patch.getDiffs()) {
+    public static void convertPatch(Path patchFile, Patch patch, RemapIndex inputToOutput, GitObjectReader inputRepo, PatchApplier applier, OutputTree output) throws IOException {
+        String commit = getCommit(patch);
+        String parent = null;
+
+        // Request every input file up front, so git reads them while the earlier diffs are converted
+        List<Diff> diffs = patch.getDiffs();
+        List<CompletableFuture<byte[]>> inputFiles = new ArrayList<>();
+        for (Diff diff : diffs) {
+            if (diff.getDst().equals("/dev/null")) {
+                inputFiles.add(null);
+            } else if (diff.getSrc().equals("/dev/null")) {
+                // The file as of the patch commit
+                inputFiles.add(inputRepo.readBlobAsync(commit, diff.getDst()));
+            } else {
+                // The file as of the commit before the patch
+                if (parent == null) {
+                    parent = inputRepo.resolveCommit(commit + "^");
+                }
+                inputFiles.add(inputRepo.readBlobAsync(parent, diff.getSrc()));
+            }
+        }
+
+        for (int i = 0; i < diffs.size(); i++) {
+            Diff diff = diffs.get(i);
             boolean renamedFile = !diff.getSrc().equals(diff.getDst());
             boolean newFile = diff.getSrc().equals("/dev/null");
             boolean deletedFile = diff.getDst().equals("/dev/null");
@@ -91,72 +161,50 @@ public class PatchFileConverter {
                 throw new IllegalStateException("Patch file " + patchFile + " contains a diff pointing to a null file");
             } else if (deletedFile) {
                 // Delete the file
-                Files.deleteIfExists(outputPath.resolve(diff.getSrc()));
+                output.delete(diff.getSrc());
             } else if (newFile) {
-                Path inputFile = inputRepo.resolve(diff.getDst());
-
-                // Checkout patch commit in the input repo
-                String fromLine = patch.getHeader().get(0);
-                String commitFrom = fromLine.substring(fromLine.lastIndexOf("From ") + 5, fromLine.lastIndexOf(" Mon Sep 17 00:00:00 2001"));
-                String checkoutOutput = Util.runGitCommand(inputRepo, "checkout", commitFrom);
-                if (checkoutOutput.contains("error:")) {
-                    throw new RuntimeException("There was an error checking out the patch commit for " + patchFile + "\n" + checkoutOutput);
-                }
+                byte[] inputFile = GitObjectReader.await(inputFiles.get(i));
 
-                EnigmaFile remappedFile = readAndRemapFile(inputFile, inputToOutput);
-                remappedFile.export(outputPath.resolve(diff.getDst()));
+                EnigmaFile remappedFile = readAndRemapFile(inputFile, diff.getDst(), inputToOutput);
+                output.write(diff.getDst(), remappedFile.toString());
             } else {
-                Path inputSrcFile = inputRepo.resolve(diff.getSrc());
-                Path outputSrcFile = outputPath.resolve(diff.getSrc());
-
-                // Checkout commit before the patch in the input repo
-                String fromLine = patch.getHeader().get(0);
-                String commitFrom = fromLine.substring(fromLine.lastIndexOf("From ") + 5, fromLine.lastIndexOf(" Mon Sep 17 00:00:00 2001"));
-                String checkoutOutput = Util.runGitCommand(inputRepo, "checkout", commitFrom + "^");
-                if (checkoutOutput.contains("error:")) {
-                    throw new RuntimeException("There was an error checking out the commit previous to the patch " + patchFile + "\n" + checkoutOutput);
+                String outputSrcFile = output.read(diff.getSrc());
+                if (outputSrcFile == null) {
+                    throw new NoSuchFileException(diff.getSrc(), null, "The patched file does not exist in the output");
                 }
+                byte[] inputSrcFile = GitObjectReader.await(inputFiles.get(i));
 
                 // Check the input and output files have the same content
-                EnigmaFile remappedInputSrcEnigmaFile = readAndRemapFile(inputSrcFile, inputToOutput);
-                if (!Files.readString(outputSrcFile).replace("\r\n", "\n").equals(remappedInputSrcEnigmaFile.toString())) {
+                EnigmaFile remappedInputSrcEnigmaFile = readAndRemapFile(inputSrcFile, diff.getSrc(), inputToOutput);
+                if (!outputSrcFile.replace("\r\n", "\n").equals(remappedInputSrcEnigmaFile.toString())) {
                     System.out.println("WARNING: The output repository file " + diff.getSrc() + " does not have the same content as the input repository file. The conversion will add/remove some mappings");
                 }
 
-                List<String> inputSrcFileLines = Files.readAllLines(inputSrcFile);
-                List<String> inputDstFileLines = Patch.applyDiff(inputSrcFileLines, diff);
-                Path outputDstFile = outputPath.resolve(diff.getDst());
+                List<String> inputSrcFileLines = toLines(inputSrcFile);
+                PatchApplier.ApplyResult applied = applier.apply(inputSrcFileLines, diff);
+                for (PatchApplier.BlockResult block : applied.blocks()) {
+                    if (block.status() == PatchApplier.Status.FAILED) {
+                        throw new IllegalStateException("The block at line " + block.expectedLine() + " of " + diff.getSrc() + " in " + patchFile + " does not match the input repository file");
+                    } else if (block.status() == PatchApplier.Status.RELOCATED) {
+                        System.out.println("Applied the block at line " + block.expectedLine() + " of " + diff.getSrc() + " in " + patchFile + " at line " + block.appliedLine());
+                    }
+                }
+                List<String> inputDstFileLines = applied.lines();
 
                 EnigmaFile remappedInputDstEnigmaFile = readAndRemapFileLines(inputDstFileLines, inputToOutput);
                 if (renamedFile) {
-                    Files.deleteIfExists(outputSrcFile);
+                    output.delete(diff.getSrc());
                 }
-                remappedInputDstEnigmaFile.export(outputDstFile);
+                output.write(diff.getDst(), remappedInputDstEnigmaFile.toString());
             }
         }
     }
 
-    private static EnigmaFile readAndRemapFile(Path file, MappingSet inputToOutput) throws IOException {
-        Deque<ClassMapping<?, ?>> mappings = new ArrayDeque<>();
-        return EnigmaReader.readFile(file, (type, original, signature, isMethod) -> {
-            try {
-                return Util.remapObfuscated(type, original, signature, isMethod, inputToOutput, mappings);
-            } catch (Exception e) {
-                System.err.println("Error finding mapping for " + original + " with type " + type + " in file " + file);
-                return original;
-            }
-        });
+    private static EnigmaFile readAndRemapFile(byte[] content, String file, RemapIndex inputToOutput) {
+        return EnigmaReader.read(new EnigmaTokenizer(ByteBuffer.wrap(content)), new RemapVisitor(inputToOutput, "file " + file));
     }
 
-    private static EnigmaFile readAndRemapFileLines(List<String> lines, MappingSet inputToOutput) {
-        Deque<ClassMapping<?, ?>> mappings = new ArrayDeque<>();
-        return EnigmaReader.readLines(lines, (type, original, signature, isMethod) -> {
-            try {
-                return Util.remapObfuscated(type, original, signature, isMethod, inputToOutput, mappings);
-            } catch (Exception e) {
-                System.err.println("Error finding mapping for " + original + " with type " + type);
-                return original;
-            }
-        });
+    private static EnigmaFile readAndRemapFileLines(List<String> lines, RemapIndex inputToOutput) {
+        return EnigmaReader.readLines(lines, new RemapVisitor(inputToOutput, "patched lines"));
     }
 }
@@ -0,0 +1,124 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaStreamRemapper;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Diff;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.DiffBlock;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.DiffLine;
+
+// Remaps the lines of a diff without touching the rest of the file. Every block is remapped on its own, starting
+// from the CLASS lines of the source file that enclose it, and keeps its line numbers since lines are remapped 1:1.
+public class PatchRemapper {
+    private final RemapIndex inputToOutput;
+
+    public PatchRemapper(RemapIndex inputToOutput) {
+        this.inputToOutput = inputToOutput;
+    }
+
+    // The source lines are only needed for blocks that do not start at the first line of the file
+    public Diff remap(Diff diff, @Nullable List<String> sourceLines) throws IOException {
+        List<DiffBlock> blocks = new ArrayList<>();
+        for (DiffBlock block : diff.getBlocks()) {
+            blocks.add(remapBlock(diff, block, sourceLines));
+        }
+
+        // The blob hashes of the index line do not match the remapped files
+        List<String> info = diff.getInfo().stream().filter(line -> !line.startsWith("index ")).toList();
+        return new Diff(diff.getSrc(), diff.getDst(), blocks, info);
+    }
+
+    public static boolean needsSourceLines(Diff diff) {
+        return diff.getBlocks().stream().anyMatch(block -> block.getSourceLine() > 1);
+    }
+
+    private DiffBlock remapBlock(Diff diff, DiffBlock block, @Nullable List<String> sourceLines) throws IOException {
+        // The source and destination can open and close different classes, so each side keeps its own stack
+        LineRemapper source = new LineRemapper(new RemapVisitor(inputToOutput, "diff of " + diff.getSrc()));
+        LineRemapper destination = new LineRemapper(new RemapVisitor(inputToOutput, "diff of " + diff.getDst()));
+
+        if (block.getSourceLine() > 1) {
+            if (sourceLines == null) {
+                throw new IllegalArgumentException("The source of " + diff.getSrc() + " is needed to remap a block at line " + block.getSourceLine());
+            }
+            for (String context : getEnclosingClasses(sourceLines, block)) {
+                source.remap(context);
+                destination.remap(context);
+            }
+        }
+
+        List<DiffLine> lines = new ArrayList<>(block.getDiffLines().size());
+        for (DiffLine line : block.getDiffLines()) {
+            String remapped = switch (line.getType()) {
+                case REMOVED -> source.remap(line.getLine());
+                case ADDED -> destination.remap(line.getLine());
+                case UNCHANGED -> {
+                    destination.remap(line.getLine());
+                    yield source.remap(line.getLine());
+                }
+            };
+            lines.add(new DiffLine(remapped, line.getType()));
+        }
+
+        return new DiffBlock(block.getSourceLine(), block.getSourceSize(), block.getDestLine(), block.getDestSize(), List.copyOf(lines));
+    }
+
+    // Walks back from the first line of the block, collecting the CLASS lines at each lower indentation
+    private static List<String> getEnclosingClasses(List<String> sourceLines, DiffBlock block) {
+        Deque<String> classes = new ArrayDeque<>();
+        int indent = block.getDiffLines().stream().map(DiffLine::getLine).filter(line -> !line.isBlank()).findFirst().map(PatchRemapper::getIndent).orElse(0);
+
+        for (int i = Math.min(block.getSourceLine() - 1, sourceLines.size()) - 1; i >= 0 && indent > 0; i--) {
+            String line = sourceLines.get(i);
+            int lineIndent = getIndent(line);
+            if (line.isBlank() || lineIndent >= indent) {
+                continue;
+            }
+
+            indent = lineIndent;
+            if (line.startsWith(EnigmaMapping.Type.CLASS.name(), lineIndent)) {
+                classes.push(line);
+            }
+        }
+        return List.copyOf(classes);
+    }
+
+    private static int getIndent(String line) {
+        int indent = 0;
+        while (indent < line.length() && line.charAt(indent) == '\t') {
+            indent++;
+        }
+        return indent;
+    }
+
+    private static class LineRemapper {
+        private final EnigmaStreamRemapper remapper;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Reset for every line, so the whole block shares one buffer
+        private final EnigmaTokenizer tokenizer = EnigmaTokenizer.of(List.of());
+
+        private LineRemapper(RemapVisitor visitor) {
+            this.remapper = new EnigmaStreamRemapper(visitor);
+        }
+
+        private String remap(String line) throws IOException {
+            tokenizer.reset(line);
+            if (!tokenizer.next()) {
+                return line;
+            }
+
+            out.reset();
+            remapper.remapLine(tokenizer, out);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
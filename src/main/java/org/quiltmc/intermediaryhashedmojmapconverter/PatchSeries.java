@@ -0,0 +1,124 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Diff;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Patch;
+
+// Converts a series of patches in order. A patch waits for the earlier patches that touch any of its files, patches
+// without such dependencies run in parallel. Each patch writes to its own layer of the output tree, which is only
+// committed once the whole patch has been converted.
+public class PatchSeries {
+    private final List<Node> nodes;
+
+    private PatchSeries(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    // The files are applied in the order of their names, like the output of git format-patch
+    public static PatchSeries read(List<Path> patchFiles) throws IOException {
+        List<Path> sorted = patchFiles.stream().sorted().toList();
+        List<Node> nodes = new ArrayList<>();
+        // File -> index of the last patch touching it
+        Map<String, Integer> lastPatches = new HashMap<>();
+
+        for (Path file : sorted) {
+            Patch patch = Patch.read(file);
+            Set<Integer> dependencies = new LinkedHashSet<>();
+            for (String touched : getTouchedFiles(patch)) {
+                Integer previous = lastPatches.put(touched, nodes.size());
+                if (previous != null) {
+                    dependencies.add(previous);
+                }
+            }
+            nodes.add(new Node(file, patch, List.copyOf(dependencies)));
+        }
+
+        return new PatchSeries(nodes);
+    }
+
+    private static Set<String> getTouchedFiles(Patch patch) {
+        Set<String> files = new LinkedHashSet<>(patch.getModifiedFiles());
+        files.addAll(patch.getAddedFiles());
+        files.addAll(patch.getRemovedFiles());
+        // The source of a renamed file is neither added, removed nor modified
+        for (Diff diff : patch.getDiffs()) {
+            if (!diff.getSrc().equals("/dev/null")) {
+                files.add(diff.getSrc());
+            }
+        }
+        return files;
+    }
+
+    // The earlier patches the patch has to wait for
+    public List<Path> getDependencies(Path patchFile) {
+        for (Node node : nodes) {
+            if (node.file().equals(patchFile)) {
+                return node.dependencies().stream().map(dependency -> nodes.get(dependency).file()).toList();
+            }
+        }
+        throw new IllegalArgumentException(patchFile + " is not part of the series");
+    }
+
+    // Commits every converted patch to the output tree, patches depending on a failed patch are skipped
+    public List<ConversionScheduler.Failure> convert(OutputTree output, Converter converter, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<Path, Throwable> errors = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        try {
+            for (Node node : nodes) {
+                CompletableFuture<?>[] dependencies = node.dependencies().stream().map(futures::get).toArray(CompletableFuture[]::new);
+                futures.add(CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                    try {
+                        OutputTree layer = output.fork();
+                        converter.convert(node.file(), node.patch(), layer);
+                        layer.commit();
+                    } catch (Throwable t) {
+                        errors.put(node.file(), t);
+                        throw new CompletionException(t);
+                    }
+                }, executor));
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(t -> null).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        List<ConversionScheduler.Failure> failures = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (!futures.get(i).isCompletedExceptionally()) {
+                continue;
+            }
+
+            Throwable error = errors.get(node.file());
+            if (error == null) {
+                int failed = node.dependencies().stream().filter(dependency -> futures.get(dependency).isCompletedExceptionally()).findFirst().orElseThrow();
+                error = new IllegalStateException("Skipped because the earlier patch " + nodes.get(failed).file() + " was not converted");
+            }
+            failures.add(new ConversionScheduler.Failure(node.file(), error));
+        }
+        return failures;
+    }
+
+    public interface Converter {
+        void convert(Path file, Patch patch, OutputTree output) throws Exception;
+    }
+
+    private record Node(Path file, Patch patch, List<Integer> dependencies) {
+    }
+}
@@ -0,0 +1,191 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cadixdev.lorenz.MappingSet;
+import org.cadixdev.lorenz.model.ClassMapping;
+import org.cadixdev.lorenz.model.FieldMapping;
+import org.cadixdev.lorenz.model.InnerClassMapping;
+import org.cadixdev.lorenz.model.MethodMapping;
+import org.cadixdev.lorenz.model.TopLevelClassMapping;
+import org.jetbrains.annotations.Nullable;
+
+// Read-only lookup tables built once from the merged MappingSet. Lookups never create placeholder mappings like
+// the Lorenz getOrCreate methods do, so one index can be shared by every conversion thread without locking.
+public final class RemapIndex {
+    // Full obfuscated class name (outer$inner) -> entry
+    private final Map<String, ClassEntry> classes;
+    private final DescriptorCache descriptors = new DescriptorCache();
+
+    public RemapIndex(Map<String, ClassEntry> classes) {
+        this.classes = Map.copyOf(classes);
+    }
+
+    public static RemapIndex of(MappingSet mappings) {
+        Map<String, ClassEntry> classes = new HashMap<>();
+        for (TopLevelClassMapping classMapping : mappings.getTopLevelClassMappings()) {
+            addClass(classMapping, classes);
+        }
+        return new RemapIndex(classes);
+    }
+
+    private static ClassEntry addClass(ClassMapping<?, ?> classMapping, Map<String, ClassEntry> classes) {
+        Map<String, ClassEntry> innerClasses = new HashMap<>();
+        for (InnerClassMapping innerClassMapping : classMapping.getInnerClassMappings()) {
+            innerClasses.put(innerClassMapping.getObfuscatedName(), addClass(innerClassMapping, classes));
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        Map<String, String> fieldsByName = new HashMap<>();
+        for (FieldMapping fieldMapping : classMapping.getFieldMappings()) {
+            String remapped = fieldMapping.getDeobfuscatedName() + ";" + fieldMapping.getDeobfuscatedSignature().getType().get();
+            fieldMapping.getType().ifPresent(type -> fields.put(fieldMapping.getObfuscatedName() + ";" + type, remapped));
+            fieldsByName.put(fieldMapping.getObfuscatedName(), remapped);
+        }
+
+        Map<String, String> methods = new HashMap<>();
+        for (MethodMapping methodMapping : classMapping.getMethodMappings()) {
+            methods.put(methodMapping.getObfuscatedName() + ";" + methodMapping.getObfuscatedDescriptor(),
+                    methodMapping.getDeobfuscatedName() + ";" + methodMapping.getDeobfuscatedDescriptor());
+        }
+
+        ClassEntry entry = new ClassEntry(classMapping.getObfuscatedName(), classMapping.getDeobfuscatedName(), classMapping.getFullDeobfuscatedName(),
+                innerClasses, fields, fieldsByName, methods);
+        classes.put(classMapping.getFullObfuscatedName(), entry);
+        return entry;
+    }
+
+    @Nullable
+    public ClassEntry getClass(String fullObfuscatedName) {
+        return classes.get(fullObfuscatedName);
+    }
+
+    // Unknown classes get a detached placeholder mapping the class to itself
+    public ClassEntry getClassOrPlaceholder(String fullObfuscatedName) {
+        ClassEntry entry = classes.get(fullObfuscatedName);
+        return entry != null ? entry : ClassEntry.placeholder(fullObfuscatedName);
+    }
+
+    public Map<String, ClassEntry> getClasses() {
+        return classes;
+    }
+
+    public String remapMethod(ClassEntry owner, String nameAndDescriptor) {
+        String remapped = owner.methods.get(nameAndDescriptor);
+        if (remapped != null) {
+            return remapped;
+        }
+
+        int separator = nameAndDescriptor.indexOf(';');
+        return nameAndDescriptor.substring(0, separator + 1) + remapDescriptor(nameAndDescriptor.substring(separator + 1));
+    }
+
+    public String remapField(ClassEntry owner, String nameAndType) {
+        String remapped = owner.fields.get(nameAndType);
+        if (remapped != null) {
+            return remapped;
+        }
+
+        // The type in the file may be out of date, fall back to the name
+        String name = nameAndType.substring(0, nameAndType.indexOf(';'));
+        remapped = owner.fieldsByName.get(name);
+        if (remapped == null) {
+            throw new RuntimeException("Unable to find mapping for " + owner.getObfuscatedName() + "." + name);
+        }
+        return remapped;
+    }
+
+    public String remapDescriptor(String descriptor) {
+        if (descriptor.indexOf('L') == -1) {
+            return descriptor;
+        }
+        return descriptors.get(descriptor, this::remapClassNames);
+    }
+
+    private String remapClassNames(String descriptor) {
+        int start = descriptor.indexOf('L');
+        StringBuilder builder = new StringBuilder(descriptor.length());
+        int last = 0;
+        while (start != -1) {
+            int end = descriptor.indexOf(';', start);
+            builder.append(descriptor, last, start + 1);
+            String className = descriptor.substring(start + 1, end);
+            ClassEntry entry = classes.get(className);
+            builder.append(entry != null ? entry.fullDeobfuscatedName : className);
+            last = end;
+            start = descriptor.indexOf('L', end);
+        }
+        builder.append(descriptor, last, descriptor.length());
+        return builder.toString();
+    }
+
+    public DescriptorCache getDescriptorCache() {
+        return descriptors;
+    }
+
+    public static final class ClassEntry {
+        private final String obfuscatedName;
+        private final String deobfuscatedName;
+        private final String fullDeobfuscatedName;
+        private final Map<String, ClassEntry> innerClasses;
+        // name;type -> name;type
+        private final Map<String, String> fields;
+        // name -> name;type
+        private final Map<String, String> fieldsByName;
+        // name;descriptor -> name;descriptor
+        private final Map<String, String> methods;
+
+        public ClassEntry(String obfuscatedName, String deobfuscatedName, String fullDeobfuscatedName, Map<String, ClassEntry> innerClasses,
+                          Map<String, String> fields, Map<String, String> fieldsByName, Map<String, String> methods) {
+            this.obfuscatedName = obfuscatedName;
+            this.deobfuscatedName = deobfuscatedName;
+            this.fullDeobfuscatedName = fullDeobfuscatedName;
+            this.innerClasses = Map.copyOf(innerClasses);
+            this.fields = Map.copyOf(fields);
+            this.fieldsByName = Map.copyOf(fieldsByName);
+            this.methods = Map.copyOf(methods);
+        }
+
+        static ClassEntry placeholder(String name) {
+            return new ClassEntry(name, name, name, Map.of(), Map.of(), Map.of(), Map.of());
+        }
+
+        public String getObfuscatedName() {
+            return obfuscatedName;
+        }
+
+        public String getDeobfuscatedName() {
+            return deobfuscatedName;
+        }
+
+        public String getFullDeobfuscatedName() {
+            return fullDeobfuscatedName;
+        }
+
+        public boolean hasInnerClass(String obfuscatedName) {
+            return innerClasses.containsKey(obfuscatedName);
+        }
+
+        @Nullable
+        public ClassEntry getInnerClass(String obfuscatedName) {
+            return innerClasses.get(obfuscatedName);
+        }
+
+        public Map<String, ClassEntry> getInnerClasses() {
+            return innerClasses;
+        }
+
+        public Map<String, String> getFields() {
+            return fields;
+        }
+
+        public Map<String, String> getFieldsByName() {
+            return fieldsByName;
+        }
+
+        public Map<String, String> getMethods() {
+            return methods;
+        }
+    }
+}
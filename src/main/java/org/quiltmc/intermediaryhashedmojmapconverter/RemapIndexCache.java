@@ -0,0 +1,191 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.VarInt;
+
+// Binary snapshot of a RemapIndex, so repeated runs against the same mapping versions skip parsing and merging the tiny files.
+// Reading decodes every class into the same maps a freshly built index has, so it saves time, not heap. The file is only
+// mapped to read it in one pass.
+public final class RemapIndexCache {
+    private static final int MAGIC = 0x49484d43; // IHMC
+    private static final int VERSION = 1;
+
+    // Snapshots should be resolved to their build first, so a new build is not served the index of an older one
+    public static String createKey(String inputArtifact, String inputNamespace, String outputArtifact, String outputNamespace) {
+        return inputArtifact + "|" + inputNamespace + "|" + outputArtifact + "|" + outputNamespace;
+    }
+
+    // Relative to the root of the artifact cache
+    public static String getCacheEntry(String key) {
+        return "remap-index/" + key.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin";
+    }
+
+    @Nullable
+    public static RemapIndex read(Path path, String key) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !readString(buffer).equals(key)) {
+                return null;
+            }
+
+            String[] strings = new String[VarInt.read(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+
+            // Classes are stored children first, so inner classes are always read before their outer class
+            RemapIndex.ClassEntry[] entries = new RemapIndex.ClassEntry[VarInt.read(buffer)];
+            Map<String, RemapIndex.ClassEntry> classes = new HashMap<>(entries.length * 2);
+            for (int i = 0; i < entries.length; i++) {
+                String fullObfuscatedName = strings[VarInt.read(buffer)];
+                String obfuscatedName = strings[VarInt.read(buffer)];
+                String deobfuscatedName = strings[VarInt.read(buffer)];
+                String fullDeobfuscatedName = strings[VarInt.read(buffer)];
+
+                Map<String, RemapIndex.ClassEntry> innerClasses = new HashMap<>();
+                for (int j = VarInt.read(buffer); j > 0; j--) {
+                    String name = strings[VarInt.read(buffer)];
+                    innerClasses.put(name, entries[VarInt.read(buffer)]);
+                }
+
+                entries[i] = new RemapIndex.ClassEntry(obfuscatedName, deobfuscatedName, fullDeobfuscatedName, innerClasses,
+                        readStringMap(buffer, strings), readStringMap(buffer, strings), readStringMap(buffer, strings));
+                classes.put(fullObfuscatedName, entries[i]);
+            }
+
+            return new RemapIndex(classes);
+        } catch (Exception e) {
+            // A corrupt or truncated cache is rebuilt from the tiny files
+            System.err.println("Unable to read remap index cache " + path + ": " + e);
+            return null;
+        }
+    }
+
+    public static void write(Path path, String key, RemapIndex index) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        List<RemapIndex.ClassEntry> order = new ArrayList<>();
+        Map<RemapIndex.ClassEntry, Integer> entryIds = new IdentityHashMap<>();
+        Map<RemapIndex.ClassEntry, String> fullNames = new IdentityHashMap<>();
+        index.getClasses().forEach((fullName, entry) -> {
+            fullNames.put(entry, fullName);
+            collect(entry, order, entryIds);
+        });
+
+        for (RemapIndex.ClassEntry entry : order) {
+            intern(strings, fullNames.get(entry));
+            intern(strings, entry.getObfuscatedName());
+            intern(strings, entry.getDeobfuscatedName());
+            intern(strings, entry.getFullDeobfuscatedName());
+            entry.getInnerClasses().keySet().forEach(name -> intern(strings, name));
+            for (Map<String, String> map : List.of(entry.getFields(), entry.getFieldsByName(), entry.getMethods())) {
+                map.forEach((from, to) -> {
+                    intern(strings, from);
+                    intern(strings, to);
+                });
+            }
+        }
+
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, key);
+
+                VarInt.write(out, strings.size());
+                for (String string : strings.keySet()) {
+                    writeString(out, string);
+                }
+
+                VarInt.write(out, order.size());
+                for (RemapIndex.ClassEntry entry : order) {
+                    VarInt.write(out, strings.get(fullNames.get(entry)));
+                    VarInt.write(out, strings.get(entry.getObfuscatedName()));
+                    VarInt.write(out, strings.get(entry.getDeobfuscatedName()));
+                    VarInt.write(out, strings.get(entry.getFullDeobfuscatedName()));
+
+                    VarInt.write(out, entry.getInnerClasses().size());
+                    for (Map.Entry<String, RemapIndex.ClassEntry> inner : entry.getInnerClasses().entrySet()) {
+                        VarInt.write(out, strings.get(inner.getKey()));
+                        VarInt.write(out, entryIds.get(inner.getValue()));
+                    }
+
+                    writeStringMap(out, entry.getFields(), strings);
+                    writeStringMap(out, entry.getFieldsByName(), strings);
+                    writeStringMap(out, entry.getMethods(), strings);
+                }
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void collect(RemapIndex.ClassEntry entry, List<RemapIndex.ClassEntry> order, Map<RemapIndex.ClassEntry, Integer> entryIds) {
+        if (entryIds.containsKey(entry)) {
+            return;
+        }
+
+        for (RemapIndex.ClassEntry inner : entry.getInnerClasses().values()) {
+            collect(inner, order, entryIds);
+        }
+        entryIds.put(entry, order.size());
+        order.add(entry);
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    private static Map<String, String> readStringMap(ByteBuffer buffer, String[] strings) {
+        int size = VarInt.read(buffer);
+        Map<String, String> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(strings[VarInt.read(buffer)], strings[VarInt.read(buffer)]);
+        }
+        return map;
+    }
+
+    private static void writeStringMap(DataOutputStream out, Map<String, String> map, Map<String, Integer> strings) throws IOException {
+        VarInt.write(out, map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            VarInt.write(out, strings.get(entry.getKey()));
+            VarInt.write(out, strings.get(entry.getValue()));
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[VarInt.read(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        VarInt.write(out, bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,53 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.jetbrains.annotations.Nullable;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
+
+// Remaps the names of a single Enigma file, keeping track of the classes it is currently in
+public class RemapVisitor implements EnigmaReader.ObfuscatedNameVisitor {
+    private static final ConversionMetrics.Counter MISSES = ConversionMetrics.getDefault().counter("remap.lookupMisses");
+
+    private final RemapIndex inputToOutput;
+    private final String source;
+    @Nullable
+    private final SymbolTable symbols;
+    private final Deque<RemapIndex.ClassEntry> classes = new ArrayDeque<>();
+
+    public RemapVisitor(RemapIndex inputToOutput, String source) {
+        this(inputToOutput, source, null);
+    }
+
+    // With a symbol table, remapped class names are interned into it. Members are returned as name;descriptor, which
+    // the reader splits and interns itself.
+    public RemapVisitor(RemapIndex inputToOutput, String source, @Nullable SymbolTable symbols) {
+        this.inputToOutput = inputToOutput;
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public String visit(EnigmaMapping.Type type, String original, boolean signature, boolean isMethod) {
+        try {
+            String remapped = Util.remapObfuscated(type, original, signature, isMethod, inputToOutput, classes);
+            return symbols == null || signature ? remapped : symbols.intern(remapped);
+        } catch (Exception e) {
+            MISSES.increment();
+            System.err.println("Error finding mapping for " + original + " with type " + type + " in " + source);
+            if (!signature) {
+                // Keep the class stack balanced for exitClass
+                classes.push(RemapIndex.ClassEntry.placeholder(original));
+            }
+            return original;
+        }
+    }
+
+    @Override
+    public void exitClass() {
+        classes.poll();
+    }
+}
@@ -0,0 +1,83 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jetbrains.annotations.Nullable;
+
+// Remembers which build each non unique snapshot resolved to and when, so snapshots are not looked up again on every
+// run, and can still be resolved without a network
+public final class SnapshotIndex {
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String ENTRY = "snapshot-index.json";
+
+    private final ArtifactCache cache;
+    // Snapshot artifact -> latest resolution
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private SnapshotIndex(ArtifactCache cache) {
+        this.cache = cache;
+    }
+
+    public static SnapshotIndex load(ArtifactCache cache) {
+        SnapshotIndex index = new SnapshotIndex(cache);
+        index.entries.putAll(read(cache.resolveMetadata(ENTRY)));
+        return index;
+    }
+
+    @Nullable
+    public Entry get(MavenFileDownloader.MavenArtifact artifact) {
+        return entries.get(artifact.toString());
+    }
+
+    // Merged with what other processes wrote in the meantime
+    public void put(MavenFileDownloader.MavenArtifact artifact, Entry entry) throws IOException {
+        entries.put(artifact.toString(), entry);
+        Path path = cache.resolveMetadata(ENTRY);
+        cache.withLock(ENTRY, () -> {
+            Map<String, Entry> merged = new TreeMap<>(read(path));
+            merged.put(artifact.toString(), entry);
+
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                MAPPER.writeValue(temp.toFile(), merged);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return null;
+        });
+    }
+
+    private static Map<String, Entry> read(Path path) {
+        if (!Files.exists(path)) {
+            return Map.of();
+        }
+
+        try {
+            return MAPPER.readValue(path.toFile(), new TypeReference<Map<String, Entry>>() {});
+        } catch (IOException e) {
+            // Only costs a lookup of each snapshot
+            System.err.println("Unable to read snapshot index " + path + ": " + e);
+            return Map.of();
+        }
+    }
+
+    // The version is the unique snapshot version, resolved from the repository
+    public record Entry(String version, long resolvedAt) {
+        public boolean isFresh(Duration maxAge) {
+            return Instant.ofEpochMilli(resolvedAt).plus(maxAge).isAfter(Instant.now());
+        }
+    }
+}
@@ -2,96 +2,220 @@ package org.quiltmc.intermediaryhashedmojmapconverter;
 
 import net.fabricmc.lorenztiny.TinyMappingsReader;
 import net.fabricmc.mapping.tree.TinyMappingFactory;
-import org.cadixdev.bombe.type.signature.MethodSignature;
 import org.cadixdev.lorenz.MappingSet;
-import org.cadixdev.lorenz.model.ClassMapping;
-import org.cadixdev.lorenz.model.FieldMapping;
-import org.cadixdev.lorenz.model.MethodMapping;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.GZIPInputStream;
 
 public final class Util {
     public static final String CACHE_DIR = ".intermediaryhashedmojmapconverter";
+    // Top level classes missing from the index, which are kept as they are
+    private static final ConversionMetrics.Counter UNKNOWN_CLASSES = ConversionMetrics.getDefault().counter("remap.unknownClasses");
+
+    // Set to keep the downloaded jars next to the extracted tiny files
+    public static final boolean KEEP_JARS = Boolean.getBoolean("intermediaryhashedmojmapconverter.keepJars");
+    // Set to store the extracted tiny files gzipped
+    public static final boolean COMPRESS_TINY_CACHE = Boolean.getBoolean("intermediaryhashedmojmapconverter.compressTinyCache");
+
+    // Non unique snapshots resolve to their latest build, other artifacts are returned as is
+    public static String resolveArtifact(String artifact) throws IOException {
+        return resolveMavenArtifact(artifact).toString();
+    }
+
+    private static MavenFileDownloader.MavenArtifact resolveMavenArtifact(String artifact) throws IOException {
+        return MavenFileDownloader.resolveSnapshot(MavenFileDownloader.MavenArtifact.from(artifact), MavenFileDownloader.MAVEN_REPOSITORIES,
+                SnapshotIndex.load(ArtifactCache.getDefault()), MavenFileDownloader.Mode.getDefault());
+    }
 
     public static Path checkAndCreateTinyCache(String artifact) throws IOException {
-        MavenFileDownloader.MavenArtifact mavenArtifact = MavenFileDownloader.MavenArtifact.from(artifact);
-        Path cachedJarFilePath = Path.of(System.getProperty("user.home"), CACHE_DIR, mavenArtifact.artifactId(), mavenArtifact.version() + ".jar");
-        Path cachedFilePath = cachedJarFilePath.getParent().resolve(mavenArtifact.version() + ".tiny");
-        if (!Files.exists(cachedJarFilePath)) {
-            MavenFileDownloader.downloadFile(mavenArtifact, cachedJarFilePath);
-            ZipFile jarFile = new ZipFile(cachedJarFilePath.toFile());
-            ZipEntry tinyFileEntry = jarFile.stream().filter(zipEntry -> zipEntry.getName().endsWith(".tiny")).findFirst().get();
-            Files.write(cachedFilePath, jarFile.getInputStream(tinyFileEntry).readAllBytes());
+        ArtifactCache cache = ArtifactCache.getDefault();
+        // Snapshots are cached per build
+        MavenFileDownloader.MavenArtifact mavenArtifact = resolveMavenArtifact(artifact);
+        String entry = mavenArtifact.artifactId() + "/" + mavenArtifact.version();
+        // Either form is fine, whichever was created first
+        for (String extension : List.of(".tiny", ".tiny.gz")) {
+            Path cached = cache.find(entry + extension);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        MavenFileDownloader.Transformer extractTiny = MavenFileDownloader.extractEntry(".tiny", COMPRESS_TINY_CACHE);
+        return cache.get(entry + (COMPRESS_TINY_CACHE ? ".tiny.gz" : ".tiny"), output -> {
+            Path jar = KEEP_JARS ? cache.get(entry + ".jar", jarOutput -> MavenFileDownloader.downloadFile(mavenArtifact, jarOutput)) : cache.find(entry + ".jar");
+            if (jar == null) {
+                // Only the tiny file is written, straight from the response
+                MavenFileDownloader.downloadFile(mavenArtifact, output, MavenFileDownloader.MAVEN_REPOSITORIES, extractTiny);
+                return;
+            }
+
+            try (InputStream input = new BufferedInputStream(Files.newInputStream(jar)); OutputStream stream = new BufferedOutputStream(Files.newOutputStream(output))) {
+                extractTiny.transform(input, stream);
+            }
+        });
+    }
+
+    public static BufferedReader openTinyCache(Path tinyFile) throws IOException {
+        InputStream input = Files.newInputStream(tinyFile);
+        if (tinyFile.getFileName().toString().endsWith(".gz")) {
+            input = new GZIPInputStream(input);
         }
-        return cachedFilePath;
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
     }
 
     public static MappingSet createInputToOutputMappings(String inputArtifact, String inputNamespace, String outputArtifact, String outputNamespace) throws IOException {
-        Path inputTinyFile = Util.checkAndCreateTinyCache(inputArtifact);
-        Path outputTinyFile = Util.checkAndCreateTinyCache(outputArtifact);
+        ConversionMetrics metrics = ConversionMetrics.getDefault();
+        Path inputTinyFile;
+        Path outputTinyFile;
+        long start = System.nanoTime();
+        try {
+            // Resolve both artifacts at once, most of the time is spent waiting on the repositories
+            CompletableFuture<Path> inputTinyFuture = CompletableFuture.supplyAsync(() -> checkAndCreateTinyCacheUnchecked(inputArtifact));
+            outputTinyFile = checkAndCreateTinyCache(outputArtifact);
+            inputTinyFile = join(inputTinyFuture);
+        } finally {
+            metrics.histogram("mappings.resolveArtifacts").record(System.nanoTime() - start);
+        }
 
-        MappingSet officialToInput = new TinyMappingsReader(TinyMappingFactory.load(Files.newBufferedReader(inputTinyFile)), "official", inputNamespace).read();
-        MappingSet officialToOutput = new TinyMappingsReader(TinyMappingFactory.load(Files.newBufferedReader(outputTinyFile)), "official", outputNamespace).read();
+        MappingSet officialToInput = readTiny(inputTinyFile, inputArtifact, inputNamespace);
+        MappingSet officialToOutput = readTiny(outputTinyFile, outputArtifact, outputNamespace);
 
-        return MappingSet.create().merge(officialToInput.reverse()).merge(officialToOutput);
+        start = System.nanoTime();
+        try {
+            return MappingSet.create().merge(officialToInput.reverse()).merge(officialToOutput);
+        } finally {
+            metrics.histogram("mappings.merge").record(System.nanoTime() - start);
+        }
     }
 
-    public static String remapObfuscated(EnigmaMapping.Type type, String original, boolean signature, boolean isMethod, MappingSet inputToOutput, Deque<ClassMapping<?, ?>> mappings) {
-        if (signature) {
-            String obfuscatedName = original.substring(0, original.indexOf(";"));
-            String oldSignature = original.substring(original.indexOf(";") + 1);
+    private static MappingSet readTiny(Path tinyFile, String artifact, String namespace) throws IOException {
+        long start = System.nanoTime();
+        try (BufferedReader reader = openTinyCache(tinyFile)) {
+            return new TinyMappingsReader(TinyMappingFactory.load(reader), "official", namespace).read();
+        } finally {
+            ConversionMetrics.getDefault().histogram("mappings.parseTiny").record(System.nanoTime() - start, artifact);
+        }
+    }
 
+    private static Path checkAndCreateTinyCacheUnchecked(String artifact) {
+        try {
+            return checkAndCreateTinyCache(artifact);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String resolveArtifactUnchecked(String artifact) {
+        try {
+            return resolveArtifact(artifact);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public static RemapIndex createInputToOutputIndex(String inputArtifact, String inputNamespace, String outputArtifact, String outputNamespace) throws IOException {
+        long start = System.nanoTime();
+        try {
+            // Keyed by the resolved builds, so a new snapshot build gets a new index
+            CompletableFuture<String> resolvedInputFuture = CompletableFuture.supplyAsync(() -> resolveArtifactUnchecked(inputArtifact));
+            String resolvedOutput = resolveArtifact(outputArtifact);
+            String resolvedInput = join(resolvedInputFuture);
+            String key = RemapIndexCache.createKey(resolvedInput, inputNamespace, resolvedOutput, outputNamespace);
+            return loadInputToOutputIndex(key, resolvedInput, inputNamespace, resolvedOutput, outputNamespace);
+        } finally {
+            ConversionMetrics.getDefault().histogram("mappings.load").record(System.nanoTime() - start);
+        }
+    }
+
+    private static RemapIndex loadInputToOutputIndex(String key, String inputArtifact, String inputNamespace, String outputArtifact, String outputNamespace) throws IOException {
+        ArtifactCache cache = ArtifactCache.getDefault();
+        String entry = RemapIndexCache.getCacheEntry(key);
+        Path cachedIndexPath = cache.resolve(entry);
+        RemapIndex index = cache.find(entry) != null ? RemapIndexCache.read(cachedIndexPath, key) : null;
+        if (index == null) {
+            index = cache.withLock(entry, () -> {
+                // Another process may have written it while we were waiting
+                RemapIndex written = RemapIndexCache.read(cachedIndexPath, key);
+                if (written != null) {
+                    return written;
+                }
+
+                ConversionMetrics.getDefault().counter("mappings.indexCacheMisses").increment();
+                RemapIndex created = RemapIndex.of(createInputToOutputMappings(inputArtifact, inputNamespace, outputArtifact, outputNamespace));
+                RemapIndexCache.write(cachedIndexPath, key, created);
+                return created;
+            });
+            cache.evict();
+        }
+        return index;
+    }
+
+    public static String remapObfuscated(EnigmaMapping.Type type, String original, boolean signature, boolean isMethod, RemapIndex inputToOutput, Deque<RemapIndex.ClassEntry> classes) {
+        if (signature) {
             if (isMethod) {
-                MethodMapping methodMapping = mappings.peek().getOrCreateMethodMapping(MethodSignature.of(obfuscatedName, oldSignature));
-                return methodMapping.getDeobfuscatedName() + ";" + methodMapping.getDeobfuscatedDescriptor();
+                return inputToOutput.remapMethod(classes.peek(), original);
             }
 
-            FieldMapping fieldMapping = mappings.peek().getFieldMapping(obfuscatedName).orElseThrow(() -> new RuntimeException("Unable to find mapping for " + mappings.peek().getObfuscatedName() + "." + obfuscatedName));
-            return fieldMapping.getDeobfuscatedName() + ";" + fieldMapping.getDeobfuscatedSignature().getType().get();
+            return inputToOutput.remapField(classes.peek(), original);
         }
 
-        if (mappings.isEmpty()) {
-            mappings.push(inputToOutput.getOrCreateClassMapping(original));
+        if (classes.isEmpty()) {
+            RemapIndex.ClassEntry entry = inputToOutput.getClass(original);
+            if (entry == null) {
+                UNKNOWN_CLASSES.increment();
+                entry = RemapIndex.ClassEntry.placeholder(original);
+            }
+            classes.push(entry);
         } else {
-            while (!mappings.isEmpty() && !mappings.peek().hasInnerClassMapping(original)) {
-                mappings.pop();
+            RemapIndex.ClassEntry outer = null;
+            for (RemapIndex.ClassEntry entry : classes) {
+                if (entry.hasInnerClass(original)) {
+                    outer = entry;
+                    break;
+                }
             }
 
-            mappings.push(mappings.peek().getOrCreateInnerClassMapping(original));
+            if (outer == null) {
+                throw new RuntimeException("Unable to find the outer class of " + original);
+            }
+            // The classes above the owner stay on the stack, every push is undone by exactly one exitClass
+            classes.push(outer.getInnerClass(original));
         }
 
-        return mappings.peek().getDeobfuscatedName();
+        return classes.peek().getDeobfuscatedName();
     }
 
     public static List<Path> walkDirectoryAndCollectFiles(Path directory) throws IOException {
         return Files.walk(directory).filter(path -> !Files.isDirectory(path)).collect(Collectors.toList());
     }
 
-    public static String getUncommittedChanges(Path repository) throws IOException {
-        return runGitCommand(repository, "diff-index", "HEAD", "--");
-    }
-
-    public static String getRepoHead(Path repository) throws IOException {
-        String headPointer = "HEAD -> ";
-        String[] headInfo = runGitCommand(repository, "log", "HEAD", "--format=\"%H;%D\"", "-n", "1").split(";");
-        return headInfo[1].contains(headPointer)
-                // HEAD is pointing to a branch
-                ? headInfo[1].substring(headInfo[1].indexOf(headPointer) + headPointer.length(), headInfo[1].indexOf(","))
-                // HEAD is detached
-                : headInfo[0];
-    }
-
     public static String runGitCommand(Path directory, String... args) throws IOException {
         String[] command = new String[args.length + 1];
         System.arraycopy(args, 0, command, 1, args.length);
@@ -101,8 +225,9 @@ public final class Util {
 
         String out;
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            process.waitFor();
+            // Drain the output before waiting, git blocks once the pipe buffer is full
             out = reader.lines().collect(Collectors.joining("\n"));
+            process.waitFor();
         } catch (InterruptedException e) {
             throw new RuntimeException("Failed to wait for git command '" + Arrays.stream(command).skip(1).collect(Collectors.joining(" ")) + "'", e);
         }
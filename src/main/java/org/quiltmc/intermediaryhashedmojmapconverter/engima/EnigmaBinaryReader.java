@@ -0,0 +1,146 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jetbrains.annotations.Nullable;
+
+// Reads files written by EnigmaBinaryWriter. Only the header is decoded when opening, each class is decoded from its
+// own slice of the mapped file when asked for, so reading one class doesn't touch the rest of the file. Classes are
+// numbered in the order they were written, several files may define a class with the same name.
+public final class EnigmaBinaryReader {
+    private final ByteBuffer data;
+    private final String[] strings;
+    private final List<IndexEntry> index;
+    // Obfuscated name -> number of the first class with it
+    private final Map<String, Integer> byName;
+
+    private EnigmaBinaryReader(ByteBuffer data, String[] strings, List<IndexEntry> index) {
+        this.data = data;
+        this.strings = strings;
+        this.index = index;
+        this.byName = new HashMap<>(index.size() * 2);
+        for (int i = 0; i < index.size(); i++) {
+            byName.putIfAbsent(index.get(i).name(), i);
+        }
+    }
+
+    public static EnigmaBinaryReader open(Path path) throws IOException {
+        return open(path, null);
+    }
+
+    // With a symbol table, the string table is interned into it
+    public static EnigmaBinaryReader open(Path path, @Nullable SymbolTable symbols) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < 12 || buffer.getInt() != EnigmaBinaryWriter.MAGIC) {
+            throw new IOException(path + " is not a binary mapping file");
+        }
+        int version = buffer.getInt();
+        if (version != EnigmaBinaryWriter.VERSION) {
+            throw new IOException("Unsupported binary mapping version " + version + " in " + path);
+        }
+        int headerLength = buffer.getInt();
+        ByteBuffer data = buffer.slice(buffer.position() + headerLength, buffer.limit() - buffer.position() - headerLength);
+
+        String[] strings = new String[VarInt.read(buffer)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[VarInt.read(buffer)];
+            buffer.get(bytes);
+            String string = new String(bytes, StandardCharsets.UTF_8);
+            strings[i] = symbols == null ? string : symbols.intern(string);
+        }
+
+        int classes = VarInt.read(buffer);
+        List<IndexEntry> index = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            index.add(new IndexEntry(strings[VarInt.read(buffer)], strings[VarInt.read(buffer)], VarInt.read(buffer), VarInt.read(buffer)));
+        }
+        return new EnigmaBinaryReader(data, strings, index);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Obfuscated name of the top level class
+    public String getClassName(int number) {
+        return index.get(number).name();
+    }
+
+    public String getPath(int number) {
+        return index.get(number).path();
+    }
+
+    public EnigmaFile read(int number) {
+        IndexEntry entry = index.get(number);
+        return new EnigmaFile(readClass(data.slice(entry.offset(), entry.length())));
+    }
+
+    // The first class written with the name
+    @Nullable
+    public EnigmaFile read(String obfuscatedName) {
+        Integer number = byName.get(obfuscatedName);
+        return number == null ? null : read(number);
+    }
+
+    public List<EnigmaFile> readAll() {
+        List<EnigmaFile> files = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            files.add(read(i));
+        }
+        return files;
+    }
+
+    private EnigmaClass readClass(ByteBuffer buffer) {
+        String obfuscatedName = readString(buffer);
+        String mappedName = readString(buffer);
+        String comment = readString(buffer);
+
+        Set<EnigmaField> fields = new TreeSet<>();
+        for (int i = VarInt.read(buffer); i > 0; i--) {
+            fields.add(new EnigmaField(readString(buffer), readString(buffer), readString(buffer), readString(buffer)));
+        }
+
+        Set<EnigmaMethod> methods = new TreeSet<>();
+        for (int i = VarInt.read(buffer); i > 0; i--) {
+            String methodName = readString(buffer);
+            String methodMappedName = readString(buffer);
+            String methodComment = readString(buffer);
+            String signature = readString(buffer);
+            int parameterCount = VarInt.read(buffer);
+            List<EnigmaMethod.EngimaParameter> parameters = new ArrayList<>(parameterCount);
+            for (int j = 0; j < parameterCount; j++) {
+                int zigzag = VarInt.read(buffer);
+                parameters.add(new EnigmaMethod.EngimaParameter((zigzag >>> 1) ^ -(zigzag & 1), readString(buffer), readString(buffer)));
+            }
+            methods.add(new EnigmaMethod(methodName, methodMappedName, methodComment, signature, parameters));
+        }
+
+        Set<EnigmaClass> nestedClasses = new TreeSet<>();
+        for (int i = VarInt.read(buffer); i > 0; i--) {
+            nestedClasses.add(readClass(buffer));
+        }
+        return new EnigmaClass(obfuscatedName, mappedName, comment, methods, fields, nestedClasses);
+    }
+
+    private String readString(ByteBuffer buffer) {
+        return strings[VarInt.read(buffer)];
+    }
+
+    private record IndexEntry(String name, String path, int offset, int length) {
+    }
+}
@@ -0,0 +1,178 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes any number of classes into one binary file:
+//   magic, version, header length
+//   header: string count, strings (length, UTF-8 bytes), class count, index (name, path, offset, length)
+//   data: the classes, each starting at its offset from the end of the header
+// All numbers in the header and data are varints, names and descriptors are ids into the string table, so a single
+// class can be read with just the header and its own bytes.
+public final class EnigmaBinaryWriter {
+    static final int MAGIC = 0x454e4942; // ENIB
+    static final int VERSION = 1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private int classes;
+
+    public EnigmaBinaryWriter() {
+        id("");
+    }
+
+    // The path is only recorded, e.g. where the class was read from, and may be empty
+    public EnigmaBinaryWriter add(String path, EnigmaFile file) {
+        int offset = data.size();
+        writeClass(file.getEnigmaClass());
+        addIndexEntry(file.getEnigmaClass().getObfuscatedName(), path, offset);
+        return this;
+    }
+
+    public EnigmaBinaryWriter add(String path, PackedEnigmaClass clazz) {
+        int offset = data.size();
+        writeClass(clazz);
+        addIndexEntry(clazz.getObfuscatedName(), path, offset);
+        return this;
+    }
+
+    private void addIndexEntry(String name, String path, int offset) {
+        writeVarInt(index, id(name));
+        writeVarInt(index, id(path));
+        writeVarInt(index, offset);
+        writeVarInt(index, data.size() - offset);
+        classes++;
+    }
+
+    public void write(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                write(out);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public void write(OutputStream output) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeVarInt(header, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(header, bytes.length);
+            header.writeBytes(bytes);
+        }
+        writeVarInt(header, classes);
+        index.writeTo(header);
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(header.size());
+        header.writeTo(out);
+        data.writeTo(out);
+        out.flush();
+    }
+
+    private void writeClass(EnigmaClass clazz) {
+        writeMapping(clazz);
+
+        writeVarInt(data, clazz.getFields().size());
+        for (EnigmaField field : clazz.getFields()) {
+            writeMapping(field);
+            writeVarInt(data, id(field.getSignature()));
+        }
+
+        writeVarInt(data, clazz.getMethods().size());
+        for (EnigmaMethod method : clazz.getMethods()) {
+            writeMapping(method);
+            writeVarInt(data, id(method.getSignature()));
+            writeVarInt(data, method.getParameters().size());
+            for (EnigmaMethod.EngimaParameter parameter : method.getParameters()) {
+                // Zigzag encoded, the index is whatever the file says
+                writeVarInt(data, (parameter.index() << 1) ^ (parameter.index() >> 31));
+                writeVarInt(data, id(parameter.name()));
+                writeVarInt(data, id(parameter.comment()));
+            }
+        }
+
+        writeVarInt(data, clazz.getNestedClasses().size());
+        for (EnigmaClass nestedClass : clazz.getNestedClasses()) {
+            writeClass(nestedClass);
+        }
+    }
+
+    private void writeClass(PackedEnigmaClass clazz) {
+        writeMapping(clazz.getObfuscatedName(), clazz.getMappedName(), clazz.getComment());
+
+        writeVarInt(data, clazz.getFieldCount());
+        for (int i = 0; i < clazz.getFieldCount(); i++) {
+            writeMapping(clazz.getFieldName(i), clazz.getFieldMappedName(i), clazz.getFieldComment(i));
+            writeVarInt(data, id(clazz.getFieldSignature(i)));
+        }
+
+        writeVarInt(data, clazz.getMethodCount());
+        for (int i = 0; i < clazz.getMethodCount(); i++) {
+            writeMapping(clazz.getMethodName(i), clazz.getMethodMappedName(i), clazz.getMethodComment(i));
+            writeVarInt(data, id(clazz.getMethodSignature(i)));
+            writeVarInt(data, clazz.getParameterEnd(i) - clazz.getParameterStart(i));
+            for (int j = clazz.getParameterStart(i); j < clazz.getParameterEnd(i); j++) {
+                writeVarInt(data, (clazz.getParameterIndex(j) << 1) ^ (clazz.getParameterIndex(j) >> 31));
+                writeVarInt(data, id(clazz.getParameterName(j)));
+                writeVarInt(data, id(clazz.getParameterComment(j)));
+            }
+        }
+
+        writeVarInt(data, clazz.getNestedClasses().size());
+        for (PackedEnigmaClass nestedClass : clazz.getNestedClasses()) {
+            writeClass(nestedClass);
+        }
+    }
+
+    private void writeMapping(EnigmaMapping mapping) {
+        writeMapping(mapping.getObfuscatedName(), mapping.getMappedName(), mapping.getComment());
+    }
+
+    private void writeMapping(String obfuscatedName, String mappedName, String comment) {
+        writeVarInt(data, id(obfuscatedName));
+        writeVarInt(data, id(mappedName));
+        writeVarInt(data, id(comment));
+    }
+
+    private int id(String string) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        try {
+            VarInt.write(output, value);
+        } catch (IOException e) {
+            // Never thrown by a ByteArrayOutputStream
+            throw new UncheckedIOException(e);
+        }
+    }
+}
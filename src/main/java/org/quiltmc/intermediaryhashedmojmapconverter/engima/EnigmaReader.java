@@ -1,35 +1,27 @@
 package org.quiltmc.intermediaryhashedmojmapconverter.engima;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
 
 import org.jetbrains.annotations.Nullable;
 
 public class EnigmaReader {
     private static final ObfuscatedNameVisitor DEFAULT_VISITOR = (type, original, signature, isMethod) -> original;
-    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
-    
+
     public static EnigmaFile readFile(Path path) throws IOException {
         return readFile(path, null);
     }
 
     public static EnigmaFile readFile(Path path, @Nullable ObfuscatedNameVisitor visitor) throws IOException {
-        if (visitor == null) {
-            visitor = DEFAULT_VISITOR;
-        }
-
-        List<String> lines = Files.readAllLines(path);
-
-        AtomicInteger currentLine = new AtomicInteger(0);
+        return read(EnigmaTokenizer.open(path), visitor);
+    }
 
-        return new EnigmaFile(parseClass(lines, currentLine, visitor));
+    public static EnigmaFile readFile(Path path, @Nullable ObfuscatedNameVisitor visitor, @Nullable SymbolTable symbols) throws IOException {
+        return read(EnigmaTokenizer.open(path), visitor, symbols);
     }
 
     public static EnigmaFile readLines(List<String> lines) {
@@ -37,16 +29,42 @@ public class EnigmaReader {
     }
 
     public static EnigmaFile readLines(List<String> lines, @Nullable ObfuscatedNameVisitor visitor) {
+        return read(EnigmaTokenizer.of(lines), visitor);
+    }
+
+    public static EnigmaFile read(EnigmaTokenizer tokenizer, @Nullable ObfuscatedNameVisitor visitor) {
+        return read(tokenizer, visitor, null);
+    }
+
+    // With a symbol table, names and descriptors are interned into it, the visitor sees the names as read from the file
+    public static EnigmaFile read(EnigmaTokenizer tokenizer, @Nullable ObfuscatedNameVisitor visitor, @Nullable SymbolTable symbols) {
         if (visitor == null) {
             visitor = DEFAULT_VISITOR;
         }
 
-        AtomicInteger currentLine = new AtomicInteger(0);
+        if (!nextLine(tokenizer)) {
+            throw new IllegalArgumentException("Empty mapping file");
+        }
 
-        return new EnigmaFile(parseClass(lines, currentLine, visitor));
+        EnigmaFile file = new EnigmaFile(parseClass(tokenizer, visitor, symbols));
+        // A file holds a single top level class
+        if (nextLine(tokenizer)) {
+            throw unexpectedLine(tokenizer);
+        }
+        return file;
     }
 
-    private static EnigmaClass parseClass(List<String> lines, AtomicInteger currentLine, ObfuscatedNameVisitor visitor) {
+    // Skips blank lines
+    private static boolean nextLine(EnigmaTokenizer tokenizer) {
+        while (tokenizer.next()) {
+            if (!tokenizer.isBlank()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static EnigmaClass parseClass(EnigmaTokenizer tokenizer, ObfuscatedNameVisitor visitor, @Nullable SymbolTable symbols) {
         Set<EnigmaMethod> methods = new TreeSet<>();
         Set<EnigmaField> fields = new TreeSet<>();
         Set<EnigmaClass> nestedClasses = new TreeSet<>();
@@ -54,118 +72,137 @@ public class EnigmaReader {
         String obfuscatedName;
         StringBuilder comment = new StringBuilder();
 
-        String line = lines.get(currentLine.getAndIncrement());
-        int currentIndent = line.indexOf(EnigmaMapping.Type.CLASS.name());
-        String[] tokens = WHITESPACE.split(line.trim());
+        if (tokenizer.getType() != EnigmaMapping.Type.CLASS || tokenizer.getTokenCount() < 2) {
+            throw unexpectedLine(tokenizer);
+        }
+        int currentIndent = tokenizer.getIndent();
+
+        obfuscatedName = intern(symbols, visitor.visit(EnigmaMapping.Type.CLASS, tokenizer.getToken(1), false, false));
+        name = tokenizer.getTokenCount() < 3 ? "" : intern(symbols, tokenizer.getToken(2));
 
-        obfuscatedName = visitor.visit(EnigmaMapping.Type.CLASS, tokens[1], false, false);
-        name = tokens.length < 3 ? "" : tokens[2];
+        while (nextLine(tokenizer)) {
+            if (tokenizer.getIndent() <= currentIndent) {
+                tokenizer.pushBack();
+                break;
+            }
 
-        for (; currentLine.get() < lines.size(); currentLine.getAndIncrement()) {
-            line = lines.get(currentLine.get());
-            if (line.lastIndexOf("\t") < currentIndent) {
-                currentLine.decrementAndGet();
-                return new EnigmaClass(obfuscatedName, name, comment.toString(), methods, fields, nestedClasses);
+            EnigmaMapping.Type type = tokenizer.getType();
+            if (type == null) {
+                throw unexpectedLine(tokenizer);
             }
-            tokens = WHITESPACE.split(line.trim());
-            switch (EnigmaMapping.Type.valueOf(tokens[0])) {
-                case COMMENT -> addComment(comment, line);
-                case FIELD -> fields.add(parseField(lines, currentLine, visitor));
-                case METHOD -> methods.add(parseMethod(lines, currentLine, visitor));
-                case CLASS -> nestedClasses.add(parseClass(lines, currentLine, visitor));
-                default -> throw new IllegalArgumentException("Unexpected line:\n" + line);
+            switch (type) {
+                case COMMENT -> addComment(comment, tokenizer);
+                case FIELD -> fields.add(parseField(tokenizer, visitor, symbols));
+                case METHOD -> methods.add(parseMethod(tokenizer, visitor, symbols));
+                case CLASS -> nestedClasses.add(parseClass(tokenizer, visitor, symbols));
+                default -> throw unexpectedLine(tokenizer);
             }
         }
 
-        return new EnigmaClass(obfuscatedName, name, comment.toString(), methods, fields, nestedClasses);
+        visitor.exitClass();
+        return new EnigmaClass(obfuscatedName, name, toComment(comment), methods, fields, nestedClasses);
     }
 
-    private static void addComment(StringBuilder comment, String line) {
-        if (line.trim().length() > 8) {
-            comment.append(line.trim().substring(8));
-        }
+    static IllegalArgumentException unexpectedLine(EnigmaTokenizer tokenizer) {
+        return new IllegalArgumentException("Unexpected line " + tokenizer.getLineNumber() + ":\n" + tokenizer.getLine());
+    }
+
+    private static String intern(@Nullable SymbolTable symbols, String symbol) {
+        return symbols == null ? symbol : symbols.intern(symbol);
+    }
+
+    private static String toComment(StringBuilder comment) {
+        return comment.isEmpty() ? "" : comment.toString();
+    }
+
+    private static void addComment(StringBuilder comment, EnigmaTokenizer tokenizer) {
+        comment.append(tokenizer.getCommentText());
         comment.append("\n");
     }
 
-    private static EnigmaMethod parseMethod(List<String> lines, AtomicInteger currentLine, ObfuscatedNameVisitor visitor) {
+    private static String visitMember(EnigmaTokenizer tokenizer, ObfuscatedNameVisitor visitor, EnigmaMapping.Type type) {
+        if (tokenizer.getTokenCount() < 3) {
+            throw unexpectedLine(tokenizer);
+        }
+        return visitor.visit(type, tokenizer.getToken(1) + ";" + tokenizer.getToken(tokenizer.getTokenCount() < 4 ? 2 : 3), true, type == EnigmaMapping.Type.METHOD);
+    }
+
+    private static EnigmaMethod parseMethod(EnigmaTokenizer tokenizer, ObfuscatedNameVisitor visitor, @Nullable SymbolTable symbols) {
         String name;
         String obfuscatedName;
         StringBuilder comment = new StringBuilder();
         String signature;
         List<EnigmaMethod.EngimaParameter> parameters = new ArrayList<>();
 
-        String line = lines.get(currentLine.getAndIncrement());
-        String[] tokens = WHITESPACE.split(line.trim());
-
-        String visited = visitor.visit(EnigmaMapping.Type.METHOD, tokens[1] + ";" + (tokens.length < 4 ? tokens[2] : tokens[3]), true, true);
+        String visited = visitMember(tokenizer, visitor, EnigmaMapping.Type.METHOD);
 
-        obfuscatedName = visited.substring(0, visited.indexOf(";"));
-        name = tokens.length < 4 ? "" : tokens[2];
-        signature = visited.substring(visited.indexOf(";") + 1);
+        obfuscatedName = intern(symbols, visited.substring(0, visited.indexOf(";")));
+        name = tokenizer.getTokenCount() < 4 ? "" : intern(symbols, tokenizer.getToken(2));
+        signature = intern(symbols, visited.substring(visited.indexOf(";") + 1));
 
         String currentArgName = "";
         StringBuilder currentArgComment = new StringBuilder();
         int currentArgIndex = -1;
 
-        for (; currentLine.get() < lines.size(); currentLine.getAndIncrement()) {
-            line = lines.get(currentLine.get());
-            tokens = WHITESPACE.split(line.trim());
-            if (EnigmaMapping.Type.valueOf(tokens[0]) == EnigmaMapping.Type.COMMENT) {
+        while (nextLine(tokenizer)) {
+            if (tokenizer.getType() == EnigmaMapping.Type.COMMENT) {
                 if (currentArgIndex != -1) {
-                    addComment(currentArgComment, line);
+                    addComment(currentArgComment, tokenizer);
                 } else {
-                    addComment(comment, line);
+                    addComment(comment, tokenizer);
                 }
-            } else if (EnigmaMapping.Type.valueOf(tokens[0]) == EnigmaMapping.Type.ARG){
+            } else if (tokenizer.getType() == EnigmaMapping.Type.ARG) {
                 if (currentArgIndex != -1) {
-                    parameters.add(new EnigmaMethod.EngimaParameter(currentArgIndex, currentArgName, currentArgComment.toString()));
+                    parameters.add(new EnigmaMethod.EngimaParameter(currentArgIndex, currentArgName, toComment(currentArgComment)));
                     currentArgComment = new StringBuilder();
                 }
-                currentArgIndex = Integer.parseInt(tokens[1]);
-                currentArgName = tokens[2];
+                if (tokenizer.getTokenCount() < 3) {
+                    throw unexpectedLine(tokenizer);
+                }
+                currentArgIndex = tokenizer.getTokenAsInt(1);
+                currentArgName = intern(symbols, tokenizer.getToken(2));
             } else {
-                currentLine.decrementAndGet();
+                tokenizer.pushBack();
                 break;
             }
         }
 
         if (currentArgIndex != -1) {
-            parameters.add(new EnigmaMethod.EngimaParameter(currentArgIndex, currentArgName, currentArgComment.toString()));
+            parameters.add(new EnigmaMethod.EngimaParameter(currentArgIndex, currentArgName, toComment(currentArgComment)));
         }
 
-        return new EnigmaMethod(obfuscatedName, name, comment.toString(), signature, parameters);
+        return new EnigmaMethod(obfuscatedName, name, toComment(comment), signature, parameters);
     }
 
-    private static EnigmaField parseField(List<String> lines, AtomicInteger currentLine, ObfuscatedNameVisitor visitor) {
+    private static EnigmaField parseField(EnigmaTokenizer tokenizer, ObfuscatedNameVisitor visitor, @Nullable SymbolTable symbols) {
         String name;
         String obfuscatedName;
         StringBuilder comment = new StringBuilder();
         String signature;
 
-        String line = lines.get(currentLine.getAndIncrement());
-        String[] tokens = WHITESPACE.split(line.trim());
-
-        String visited = visitor.visit(EnigmaMapping.Type.FIELD, tokens[1] + ";" + (tokens.length < 4 ? tokens[2] : tokens[3]), true, false);
+        String visited = visitMember(tokenizer, visitor, EnigmaMapping.Type.FIELD);
 
-        obfuscatedName = visited.substring(0, visited.indexOf(";"));
-        name = tokens.length < 4 ? "" : tokens[2];
-        signature = visited.substring(visited.indexOf(";") + 1);
+        obfuscatedName = intern(symbols, visited.substring(0, visited.indexOf(";")));
+        name = tokenizer.getTokenCount() < 4 ? "" : intern(symbols, tokenizer.getToken(2));
+        signature = intern(symbols, visited.substring(visited.indexOf(";") + 1));
 
-        for (; currentLine.get() < lines.size(); currentLine.getAndIncrement()) {
-            line = lines.get(currentLine.get());
-            tokens = WHITESPACE.split(line.trim());
-            if (EnigmaMapping.Type.valueOf(tokens[0]) == EnigmaMapping.Type.COMMENT) {
-                addComment(comment, line);
+        while (nextLine(tokenizer)) {
+            if (tokenizer.getType() == EnigmaMapping.Type.COMMENT) {
+                addComment(comment, tokenizer);
             } else {
-                currentLine.decrementAndGet();
+                tokenizer.pushBack();
                 break;
             }
         }
 
-        return new EnigmaField(obfuscatedName, name, comment.toString(), signature);
+        return new EnigmaField(obfuscatedName, name, toComment(comment), signature);
     }
 
     public interface ObfuscatedNameVisitor {
         String visit(EnigmaMapping.Type type, String original, boolean signature, boolean isMethod);
+
+        // Called once the last member of the most recently visited class has been read
+        default void exitClass() {
+        }
     }
 }
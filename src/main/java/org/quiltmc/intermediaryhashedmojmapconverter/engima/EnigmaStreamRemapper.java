@@ -0,0 +1,145 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.jetbrains.annotations.Nullable;
+
+// Remaps an Enigma file line by line without building an EnigmaFile. Only the obfuscated name and descriptor tokens
+// are rewritten, everything else is copied as is, so the output keeps the member order of the input. Whole files are
+// checked as EnigmaReader checks them, so both accept and reject the same files, single lines are remapped as they come.
+public final class EnigmaStreamRemapper {
+    private final EnigmaReader.ObfuscatedNameVisitor visitor;
+    // Indentation of the classes currently open
+    private int[] classIndents = new int[8];
+    private int depth = 0;
+    // The last CLASS, FIELD or METHOD line, which decides where COMMENT and ARG lines belong
+    @Nullable
+    private EnigmaMapping.Type lastEntry;
+
+    public EnigmaStreamRemapper(EnigmaReader.ObfuscatedNameVisitor visitor) {
+        this.visitor = visitor;
+    }
+
+    public static void remap(EnigmaTokenizer tokenizer, EnigmaReader.ObfuscatedNameVisitor visitor, OutputFactory outputFactory) throws IOException {
+        EnigmaStreamRemapper remapper = new EnigmaStreamRemapper(visitor);
+        OutputStream out = null;
+        // The output is named after the first class, so the lines up to it are remapped before the output is opened
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+
+        try {
+            while (tokenizer.next()) {
+                if (!tokenizer.isBlank()) {
+                    remapper.check(tokenizer);
+                }
+                if (out == null) {
+                    String remapped = remapper.remapLine(tokenizer, first);
+                    first.write('\n');
+                    if (remapped != null) {
+                        out = outputFactory.open(tokenizer.getTokenCount() >= 3 ? tokenizer.getToken(2) : remapped);
+                        first.writeTo(out);
+                    }
+                } else {
+                    remapper.remapLine(tokenizer, out);
+                    out.write('\n');
+                }
+            }
+
+            if (out == null) {
+                throw new IllegalArgumentException("Empty mapping file");
+            }
+            remapper.exitClasses();
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    // Writes the current line of the tokenizer without its line break, returning the remapped obfuscated name of
+    // CLASS lines and null for any other line
+    @Nullable
+    public String remapLine(EnigmaTokenizer tokenizer, OutputStream out) throws IOException {
+        EnigmaMapping.Type type = tokenizer.getType();
+        int indent = tokenizer.getIndent();
+        int lineStart = tokenizer.getLineStart();
+        int lineEnd = tokenizer.getLineEnd();
+
+        if (type == EnigmaMapping.Type.CLASS || type == EnigmaMapping.Type.FIELD || type == EnigmaMapping.Type.METHOD) {
+            // Close every class at the same or a deeper indentation
+            while (depth > 0 && classIndents[depth - 1] >= indent) {
+                depth--;
+                visitor.exitClass();
+            }
+            lastEntry = type;
+        }
+
+        if (type == EnigmaMapping.Type.CLASS && tokenizer.getTokenCount() >= 2) {
+            String remapped = visitor.visit(type, tokenizer.getToken(1), false, false);
+            if (depth == classIndents.length) {
+                classIndents = Arrays.copyOf(classIndents, depth * 2);
+            }
+            classIndents[depth++] = indent;
+
+            tokenizer.write(out, lineStart, tokenizer.getTokenStart(1));
+            out.write(remapped.getBytes(StandardCharsets.UTF_8));
+            tokenizer.write(out, tokenizer.getTokenEnd(1), lineEnd);
+            return remapped;
+        } else if ((type == EnigmaMapping.Type.FIELD || type == EnigmaMapping.Type.METHOD) && tokenizer.getTokenCount() >= 3) {
+            int descriptor = tokenizer.getTokenCount() < 4 ? 2 : 3;
+            String visited = visitor.visit(type, tokenizer.getToken(1) + ";" + tokenizer.getToken(descriptor), true, type == EnigmaMapping.Type.METHOD);
+            byte[] remapped = visited.getBytes(StandardCharsets.UTF_8);
+            // Obfuscated names are plain ASCII, so the separator is at the same index in bytes
+            int separator = visited.indexOf(';');
+
+            tokenizer.write(out, lineStart, tokenizer.getTokenStart(1));
+            out.write(remapped, 0, separator);
+            tokenizer.write(out, tokenizer.getTokenEnd(1), tokenizer.getTokenStart(descriptor));
+            out.write(remapped, separator + 1, remapped.length - separator - 1);
+            tokenizer.write(out, tokenizer.getTokenEnd(descriptor), lineEnd);
+        } else {
+            tokenizer.write(out, lineStart, lineEnd);
+        }
+        return null;
+    }
+
+    // Throws for the lines EnigmaReader rejects, given the lines before it
+    private void check(EnigmaTokenizer tokenizer) {
+        EnigmaMapping.Type type = tokenizer.getType();
+        int indent = tokenizer.getIndent();
+        if (type == null) {
+            throw EnigmaReader.unexpectedLine(tokenizer);
+        }
+
+        boolean valid = switch (type) {
+            // Anything but the first line has to be inside the top level class
+            case CLASS -> tokenizer.getTokenCount() >= 2 && (lastEntry == null || indent > classIndents[0]);
+            case FIELD, METHOD -> tokenizer.getTokenCount() >= 3 && lastEntry != null && indent > classIndents[0];
+            // Comments after a member belong to it whatever their indentation, like the arguments of a method
+            case COMMENT -> lastEntry == EnigmaMapping.Type.FIELD || lastEntry == EnigmaMapping.Type.METHOD
+                    || lastEntry != null && indent > classIndents[0];
+            case ARG -> lastEntry == EnigmaMapping.Type.METHOD && tokenizer.getTokenCount() >= 3;
+        };
+        if (!valid) {
+            throw EnigmaReader.unexpectedLine(tokenizer);
+        }
+        if (type == EnigmaMapping.Type.ARG) {
+            tokenizer.getTokenAsInt(1);
+        }
+    }
+
+    public void exitClasses() {
+        while (depth > 0) {
+            depth--;
+            visitor.exitClass();
+        }
+    }
+
+    public interface OutputFactory {
+        // Called once with the mapped name of the top level class, or its remapped obfuscated name when it has none
+        OutputStream open(String className) throws IOException;
+    }
+}
@@ -0,0 +1,301 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+// Splits Enigma files into lines and tokens directly on the encoded bytes. Tokens are kept as offsets into the buffer
+// and only turned into Strings when asked for.
+public final class EnigmaTokenizer {
+    private static final int MAX_TOKENS = 4;
+    // Smaller files are cheaper to read than to map
+    private static final long MAP_THRESHOLD = 1 << 20;
+    private static final EnigmaMapping.Type[] TYPES = EnigmaMapping.Type.values();
+
+    private ByteBuffer buffer;
+    private int limit;
+    // Only set when the buffer belongs to the tokenizer, so reset can encode into it
+    @Nullable
+    private CharsetEncoder encoder;
+    private final int[] tokenStarts = new int[MAX_TOKENS];
+    private final int[] tokenEnds = new int[MAX_TOKENS];
+    private byte[] scratch = new byte[128];
+
+    private int position;
+    private int lineNumber;
+    private int lineStart;
+    private int lineEnd;
+    private int indent;
+    private int tokenCount;
+    private EnigmaMapping.Type type;
+    private boolean pushedBack;
+
+    public EnigmaTokenizer(ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    private EnigmaTokenizer(ByteBuffer buffer, @Nullable CharsetEncoder encoder) {
+        this.buffer = buffer;
+        this.encoder = encoder;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    public static EnigmaTokenizer open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return new EnigmaTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            }
+            return new EnigmaTokenizer(buffer.flip());
+        }
+    }
+
+    // The lines are encoded straight into one buffer, sized for ASCII and only grown for other characters
+    public static EnigmaTokenizer of(List<String> lines) {
+        int size = lines.size();
+        for (String line : lines) {
+            size += line.length();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CharsetEncoder encoder = newEncoder();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) {
+                if (!buffer.hasRemaining()) {
+                    buffer = grow(buffer);
+                }
+                buffer.put((byte) '\n');
+            }
+
+            buffer = encode(encoder, lines.get(i), buffer);
+        }
+        return new EnigmaTokenizer(buffer.flip(), encoder);
+    }
+
+    // Starts over on a single line. Tokenizers created by of encode it into their own buffer, others are given a
+    // buffer of their own first rather than writing to the one they were created with.
+    public void reset(String line) {
+        if (encoder == null) {
+            encoder = newEncoder();
+            buffer = ByteBuffer.allocate(line.length());
+        }
+
+        buffer = encode(encoder, line, buffer.clear()).flip();
+        position = 0;
+        limit = buffer.limit();
+        lineNumber = 0;
+        pushedBack = false;
+    }
+
+    private static CharsetEncoder newEncoder() {
+        // Replaces unpaired surrogates like String.getBytes does
+        return StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static ByteBuffer encode(CharsetEncoder encoder, String line, ByteBuffer buffer) {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            buffer = grow(buffer);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        return ByteBuffer.allocate(buffer.capacity() * 2 + 16).put(buffer.flip());
+    }
+
+    // Moves to the next line, returning false at the end of the input
+    public boolean next() {
+        if (pushedBack) {
+            pushedBack = false;
+            return true;
+        }
+        if (position >= limit) {
+            return false;
+        }
+
+        lineNumber++;
+        lineStart = position;
+        int end = lineStart;
+        while (end < limit && buffer.get(end) != '\n') {
+            end++;
+        }
+        position = end + 1;
+        if (end > lineStart && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        lineEnd = end;
+
+        int i = lineStart;
+        while (i < lineEnd && buffer.get(i) == '\t') {
+            i++;
+        }
+        indent = i - lineStart;
+
+        tokenCount = 0;
+        while (true) {
+            while (i < lineEnd && isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            if (i == lineEnd) {
+                break;
+            }
+
+            int start = i;
+            while (i < lineEnd && !isWhitespace(buffer.get(i))) {
+                i++;
+            }
+            if (tokenCount < MAX_TOKENS) {
+                tokenStarts[tokenCount] = start;
+                tokenEnds[tokenCount] = i;
+            }
+            tokenCount++;
+        }
+
+        type = tokenCount == 0 ? null : matchType(tokenStarts[0], tokenEnds[0]);
+        return true;
+    }
+
+    // Makes the next call to next() stay on the current line
+    public void pushBack() {
+        pushedBack = true;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getIndent() {
+        return indent;
+    }
+
+    public boolean isBlank() {
+        return tokenCount == 0;
+    }
+
+    // The keyword of the line, or null for blank lines and unknown keywords
+    @Nullable
+    public EnigmaMapping.Type getType() {
+        return type;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    public int getTokenStart(int index) {
+        return tokenStarts[index];
+    }
+
+    public int getTokenEnd(int index) {
+        return tokenEnds[index];
+    }
+
+    public String getToken(int index) {
+        return decode(tokenStarts[index], tokenEnds[index]);
+    }
+
+    public int getTokenAsInt(int index) {
+        int value = 0;
+        int i = tokenStarts[index];
+        boolean negative = buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        for (; i < tokenEnds[index]; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw new NumberFormatException("For input string: \"" + getToken(index) + "\" on line " + lineNumber);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    // The text of a COMMENT line after the keyword, matching line.trim().substring(8)
+    public String getCommentText() {
+        int start = tokenStarts[0] + EnigmaMapping.Type.COMMENT.name().length() + 1;
+        int end = lineEnd;
+        while (end > lineStart && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        return start < end ? decode(start, end) : "";
+    }
+
+    public String getLine() {
+        return decode(lineStart, lineEnd);
+    }
+
+    public void write(OutputStream out, int start, int end) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + start, end - start);
+        } else {
+            out.write(copy(start, end), 0, end - start);
+        }
+    }
+
+    private String decode(int start, int end) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        return new String(copy(start, end), 0, end - start, StandardCharsets.UTF_8);
+    }
+
+    private byte[] copy(int start, int end) {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return scratch;
+    }
+
+    @Nullable
+    private EnigmaMapping.Type matchType(int start, int end) {
+        for (EnigmaMapping.Type type : TYPES) {
+            String name = type.name();
+            if (name.length() != end - start) {
+                continue;
+            }
+
+            boolean matches = true;
+            for (int i = 0; i < name.length() && matches; i++) {
+                matches = buffer.get(start + i) == name.charAt(i);
+            }
+            if (matches) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+}
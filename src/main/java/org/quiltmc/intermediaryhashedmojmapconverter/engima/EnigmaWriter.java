@@ -0,0 +1,344 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.Nullable;
+
+// Writes enigma files as UTF-8 straight into a byte buffer that is flushed to a channel when full, without building
+// the file as a string first. With an executor, full buffers are written on it while the next one is being filled.
+public final class EnigmaWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int ASYNC_BUFFERS = 3;
+    private static final byte[][] INDENTS = new byte[32][];
+    private static final byte[] CLASS = bytes("CLASS ");
+    private static final byte[] FIELD = bytes("FIELD ");
+    private static final byte[] METHOD = bytes("METHOD ");
+    private static final byte[] ARG = bytes("ARG ");
+    private static final byte[] COMMENT = bytes("COMMENT");
+
+    static {
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = bytes("\t".repeat(i));
+        }
+    }
+
+    private final WritableByteChannel channel;
+    @Nullable
+    private final Executor executor;
+    @Nullable
+    private final BlockingQueue<byte[]> freeBuffers;
+    private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+    private byte[] buffer;
+    private int position;
+
+    public EnigmaWriter(WritableByteChannel channel) {
+        this(channel, null);
+    }
+
+    public EnigmaWriter(OutputStream output) {
+        this(Channels.newChannel(output), null);
+    }
+
+    public EnigmaWriter(WritableByteChannel channel, @Nullable Executor executor) {
+        this.channel = channel;
+        this.executor = executor;
+        if (executor == null) {
+            this.freeBuffers = null;
+        } else {
+            this.freeBuffers = new ArrayBlockingQueue<>(ASYNC_BUFFERS);
+            for (int i = 1; i < ASYNC_BUFFERS; i++) {
+                this.freeBuffers.add(new byte[BUFFER_SIZE]);
+            }
+        }
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    public static void write(EnigmaFile file, Path path) throws IOException {
+        write(file, path, null);
+    }
+
+    public static void write(EnigmaFile file, Path path, @Nullable Executor executor) throws IOException {
+        try (EnigmaWriter writer = open(path, executor)) {
+            writer.write(file);
+        }
+    }
+
+    public static EnigmaWriter open(Path path) throws IOException {
+        return open(path, null);
+    }
+
+    public static EnigmaWriter open(Path path, @Nullable Executor executor) throws IOException {
+        return new EnigmaWriter(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), executor);
+    }
+
+    public static byte[] toByteArray(EnigmaFile file) {
+        return toByteArray(writer -> writer.write(file));
+    }
+
+    public static byte[] toByteArray(PackedEnigmaClass clazz) {
+        return toByteArray(writer -> writer.write(clazz));
+    }
+
+    private static byte[] toByteArray(Action action) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (EnigmaWriter writer = new EnigmaWriter(output)) {
+            action.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    public void write(EnigmaFile file) throws IOException {
+        writeClass(file.getEnigmaClass(), 0);
+    }
+
+    public void writeClass(EnigmaClass clazz, int indent) throws IOException {
+        writeClassLine(clazz.getObfuscatedName(), clazz.getMappedName(), clazz.getComment(), indent);
+
+        for (EnigmaField field : clazz.getFields()) {
+            writeMember(FIELD, field.getObfuscatedName(), field.getMappedName(), field.getSignature(), field.getComment(), indent + 1);
+        }
+
+        for (EnigmaMethod method : clazz.getMethods()) {
+            writeMember(METHOD, method.getObfuscatedName(), method.getMappedName(), method.getSignature(), method.getComment(), indent + 1);
+            for (EnigmaMethod.EngimaParameter parameter : method.getParameters()) {
+                writeParameter(parameter.index(), parameter.name(), parameter.comment(), indent + 2);
+            }
+        }
+
+        for (EnigmaClass nestedClass : clazz.getNestedClasses()) {
+            writeClass(nestedClass, indent + 1);
+        }
+    }
+
+    public void write(PackedEnigmaClass clazz) throws IOException {
+        writeClass(clazz, 0);
+    }
+
+    public void writeClass(PackedEnigmaClass clazz, int indent) throws IOException {
+        writeClassLine(clazz.getObfuscatedName(), clazz.getMappedName(), clazz.getComment(), indent);
+
+        for (int i = 0; i < clazz.getFieldCount(); i++) {
+            writeMember(FIELD, clazz.getFieldName(i), clazz.getFieldMappedName(i), clazz.getFieldSignature(i), clazz.getFieldComment(i), indent + 1);
+        }
+
+        for (int i = 0; i < clazz.getMethodCount(); i++) {
+            writeMember(METHOD, clazz.getMethodName(i), clazz.getMethodMappedName(i), clazz.getMethodSignature(i), clazz.getMethodComment(i), indent + 1);
+            for (int j = clazz.getParameterStart(i); j < clazz.getParameterEnd(i); j++) {
+                writeParameter(clazz.getParameterIndex(j), clazz.getParameterName(j), clazz.getParameterComment(j), indent + 2);
+            }
+        }
+
+        for (PackedEnigmaClass nestedClass : clazz.getNestedClasses()) {
+            writeClass(nestedClass, indent + 1);
+        }
+    }
+
+    private void writeClassLine(String obfuscatedName, String mappedName, String comment, int indent) throws IOException {
+        writeIndent(indent);
+        write(CLASS);
+        write(obfuscatedName);
+        if (!mappedName.isEmpty()) {
+            write(' ');
+            write(mappedName);
+        }
+        write('\n');
+        writeComment(comment, indent + 1);
+    }
+
+    private void writeMember(byte[] keyword, String obfuscatedName, String mappedName, String signature, String comment, int indent) throws IOException {
+        writeIndent(indent);
+        write(keyword);
+        write(obfuscatedName);
+        write(' ');
+        if (!mappedName.isEmpty()) {
+            write(mappedName);
+            write(' ');
+        }
+        write(signature);
+        write('\n');
+        writeComment(comment, indent + 1);
+    }
+
+    private void writeParameter(int index, String name, String comment, int indent) throws IOException {
+        writeIndent(indent);
+        write(ARG);
+        writeInt(index);
+        write(' ');
+        write(name);
+        write('\n');
+        writeComment(comment, indent + 1);
+    }
+
+    // One COMMENT line per line of the comment, trailing empty lines are dropped like String.split does
+    private void writeComment(String comment, int indent) throws IOException {
+        int end = comment.length();
+        while (end > 0 && comment.charAt(end - 1) == '\n') {
+            end--;
+        }
+
+        int start = 0;
+        while (end > 0) {
+            int lineEnd = comment.indexOf('\n', start);
+            if (lineEnd == -1 || lineEnd > end) {
+                lineEnd = end;
+            }
+            writeIndent(indent);
+            write(COMMENT);
+            if (lineEnd > start) {
+                write(' ');
+                write(comment, start, lineEnd);
+            }
+            write('\n');
+            if (lineEnd == end) {
+                break;
+            }
+            start = lineEnd + 1;
+        }
+    }
+
+    private void writeIndent(int indent) throws IOException {
+        write(indent < INDENTS.length ? INDENTS[indent] : bytes("\t".repeat(indent)));
+    }
+
+    private void writeInt(int value) throws IOException {
+        if (value < 0 || value >= 10) {
+            write(Integer.toString(value));
+        } else {
+            write((char) ('0' + value));
+        }
+    }
+
+    private void write(String string) throws IOException {
+        write(string, 0, string.length());
+    }
+
+    // Mappings are almost entirely ASCII, which is copied byte by byte, anything else is encoded on the slow path
+    private void write(String string, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                write(string.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) c;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            int length = Math.min(bytes.length - offset, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+
+        if (executor == null) {
+            writeFully(channel, buffer, position);
+            position = 0;
+            return;
+        }
+
+        checkPending();
+        byte[] full = buffer;
+        int length = position;
+        // The buffer is handed back even if the write failed or was skipped, so taking the next one can't block forever
+        pending = pending.thenRunAsync(() -> {
+            try {
+                writeFully(channel, full, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor).whenComplete((result, error) -> freeBuffers.add(full));
+        try {
+            buffer = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a write", e);
+        }
+        position = 0;
+    }
+
+    private void checkPending() throws IOException {
+        if (pending.isCompletedExceptionally()) {
+            awaitPending();
+        }
+    }
+
+    private void awaitPending() throws IOException {
+        try {
+            pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Failed to write", e.getCause());
+        }
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        if (executor != null) {
+            awaitPending();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+        }
+    }
+
+    private interface Action {
+        void write(EnigmaWriter writer) throws IOException;
+    }
+
+    private static void writeFully(WritableByteChannel channel, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,343 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+// A frozen class whose members are held as symbol ids in parallel int arrays rather than one object per member. The
+// members are sorted and deduplicated once when the builder is frozen, in the same order EnigmaClass's sets use.
+public final class PackedEnigmaClass {
+    private final SymbolTable symbols;
+    private final int obfuscatedName;
+    private final int mappedName;
+    private final int comment;
+
+    private final int[] fieldNames;
+    private final int[] fieldMappedNames;
+    private final int[] fieldComments;
+    private final int[] fieldSignatures;
+
+    private final int[] methodNames;
+    private final int[] methodMappedNames;
+    private final int[] methodComments;
+    private final int[] methodSignatures;
+    // The parameters of method i are parameterStarts[i] until parameterStarts[i + 1]
+    private final int[] parameterStarts;
+    private final int[] parameterIndices;
+    private final int[] parameterNames;
+    private final int[] parameterComments;
+
+    private final PackedEnigmaClass[] nestedClasses;
+
+    private PackedEnigmaClass(Builder builder) {
+        this.symbols = builder.symbols;
+        this.obfuscatedName = builder.obfuscatedName;
+        this.mappedName = builder.mappedName;
+        this.comment = builder.comment;
+
+        int[] fieldOrder = sortedMembers(builder.fieldNames, builder.fieldSignatures);
+        this.fieldNames = select(builder.fieldNames, fieldOrder);
+        this.fieldMappedNames = select(builder.fieldMappedNames, fieldOrder);
+        this.fieldComments = select(builder.fieldComments, fieldOrder);
+        this.fieldSignatures = select(builder.fieldSignatures, fieldOrder);
+
+        int[] methodOrder = sortedMembers(builder.methodNames, builder.methodSignatures);
+        this.methodNames = select(builder.methodNames, methodOrder);
+        this.methodMappedNames = select(builder.methodMappedNames, methodOrder);
+        this.methodComments = select(builder.methodComments, methodOrder);
+        this.methodSignatures = select(builder.methodSignatures, methodOrder);
+
+        // Parameters keep the order they were added in, only whole methods move
+        IntList starts = new IntList();
+        IntList indices = new IntList();
+        IntList names = new IntList();
+        IntList comments = new IntList();
+        int[] builderStarts = builder.parameterStarts.toArray();
+        for (int method : methodOrder) {
+            starts.add(indices.size());
+            int end = method + 1 < builderStarts.length ? builderStarts[method + 1] : builder.parameterIndices.size();
+            for (int i = builderStarts[method]; i < end; i++) {
+                indices.add(builder.parameterIndices.get(i));
+                names.add(builder.parameterNames.get(i));
+                comments.add(builder.parameterComments.get(i));
+            }
+        }
+        starts.add(indices.size());
+        this.parameterStarts = starts.toArray();
+        this.parameterIndices = indices.toArray();
+        this.parameterNames = names.toArray();
+        this.parameterComments = comments.toArray();
+
+        List<PackedEnigmaClass> nested = new ArrayList<>(builder.nestedClasses);
+        nested.sort(Comparator.comparing(PackedEnigmaClass::getObfuscatedName));
+        List<PackedEnigmaClass> distinct = new ArrayList<>(nested.size());
+        for (PackedEnigmaClass nestedClass : nested) {
+            if (distinct.isEmpty() || distinct.get(distinct.size() - 1).obfuscatedName != nestedClass.obfuscatedName) {
+                distinct.add(nestedClass);
+            }
+        }
+        this.nestedClasses = distinct.toArray(new PackedEnigmaClass[0]);
+    }
+
+    public static PackedEnigmaClass of(EnigmaClass clazz, SymbolTable symbols) {
+        Builder builder = new Builder(symbols, clazz.getObfuscatedName(), clazz.getMappedName(), clazz.getComment());
+        for (EnigmaField field : clazz.getFields()) {
+            builder.addField(field.getObfuscatedName(), field.getMappedName(), field.getComment(), field.getSignature());
+        }
+        for (EnigmaMethod method : clazz.getMethods()) {
+            builder.addMethod(method.getObfuscatedName(), method.getMappedName(), method.getComment(), method.getSignature());
+            for (EnigmaMethod.EngimaParameter parameter : method.getParameters()) {
+                builder.addParameter(parameter.index(), parameter.name(), parameter.comment());
+            }
+        }
+        for (EnigmaClass nestedClass : clazz.getNestedClasses()) {
+            builder.addNestedClass(of(nestedClass, symbols));
+        }
+        return builder.freeze();
+    }
+
+    public EnigmaClass toEnigmaClass() {
+        Set<EnigmaField> fields = new TreeSet<>();
+        for (int i = 0; i < getFieldCount(); i++) {
+            fields.add(new EnigmaField(getFieldName(i), getFieldMappedName(i), getFieldComment(i), getFieldSignature(i)));
+        }
+
+        Set<EnigmaMethod> methods = new TreeSet<>();
+        for (int i = 0; i < getMethodCount(); i++) {
+            List<EnigmaMethod.EngimaParameter> parameters = new ArrayList<>(getParameterEnd(i) - getParameterStart(i));
+            for (int j = getParameterStart(i); j < getParameterEnd(i); j++) {
+                parameters.add(new EnigmaMethod.EngimaParameter(getParameterIndex(j), getParameterName(j), getParameterComment(j)));
+            }
+            methods.add(new EnigmaMethod(getMethodName(i), getMethodMappedName(i), getMethodComment(i), getMethodSignature(i), parameters));
+        }
+
+        Set<EnigmaClass> nested = new TreeSet<>();
+        for (PackedEnigmaClass nestedClass : nestedClasses) {
+            nested.add(nestedClass.toEnigmaClass());
+        }
+        return new EnigmaClass(getObfuscatedName(), getMappedName(), getComment(), methods, fields, nested);
+    }
+
+    public void export(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            Files.createDirectories(path.getParent());
+        }
+        try (EnigmaWriter writer = EnigmaWriter.open(path)) {
+            writer.write(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(EnigmaWriter.toByteArray(this), StandardCharsets.UTF_8);
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public String getObfuscatedName() {
+        return symbols.get(obfuscatedName);
+    }
+
+    public String getMappedName() {
+        return symbols.get(mappedName);
+    }
+
+    public String getComment() {
+        return symbols.get(comment);
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int field) {
+        return symbols.get(fieldNames[field]);
+    }
+
+    public String getFieldMappedName(int field) {
+        return symbols.get(fieldMappedNames[field]);
+    }
+
+    public String getFieldComment(int field) {
+        return symbols.get(fieldComments[field]);
+    }
+
+    public String getFieldSignature(int field) {
+        return symbols.get(fieldSignatures[field]);
+    }
+
+    public int getMethodCount() {
+        return methodNames.length;
+    }
+
+    public String getMethodName(int method) {
+        return symbols.get(methodNames[method]);
+    }
+
+    public String getMethodMappedName(int method) {
+        return symbols.get(methodMappedNames[method]);
+    }
+
+    public String getMethodComment(int method) {
+        return symbols.get(methodComments[method]);
+    }
+
+    public String getMethodSignature(int method) {
+        return symbols.get(methodSignatures[method]);
+    }
+
+    // Parameters are numbered across the whole class, from getParameterStart(method) until getParameterEnd(method)
+    public int getParameterStart(int method) {
+        return parameterStarts[method];
+    }
+
+    public int getParameterEnd(int method) {
+        return parameterStarts[method + 1];
+    }
+
+    public int getParameterIndex(int parameter) {
+        return parameterIndices[parameter];
+    }
+
+    public String getParameterName(int parameter) {
+        return symbols.get(parameterNames[parameter]);
+    }
+
+    public String getParameterComment(int parameter) {
+        return symbols.get(parameterComments[parameter]);
+    }
+
+    public List<PackedEnigmaClass> getNestedClasses() {
+        return Arrays.asList(nestedClasses);
+    }
+
+    // Orders members by name then signature and drops repeated ones, keeping the first like adding to a TreeSet does
+    private int[] sortedMembers(IntList names, IntList signatures) {
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer, String>comparing(i -> symbols.get(names.get(i))).thenComparing(i -> symbols.get(signatures.get(i))));
+
+        IntList distinct = new IntList();
+        for (int i = 0; i < order.length; i++) {
+            int member = order[i];
+            if (i > 0) {
+                int previous = order[i - 1];
+                if (names.get(previous) == names.get(member) && signatures.get(previous) == signatures.get(member)) {
+                    continue;
+                }
+            }
+            distinct.add(member);
+        }
+        return distinct.toArray();
+    }
+
+    private static int[] select(IntList values, int[] order) {
+        int[] selected = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            selected[i] = values.get(order[i]);
+        }
+        return selected;
+    }
+
+    // Collects members in any order, parameters belong to the method added last
+    public static final class Builder {
+        private final SymbolTable symbols;
+        private final int obfuscatedName;
+        private final int mappedName;
+        private final int comment;
+        private final IntList fieldNames = new IntList();
+        private final IntList fieldMappedNames = new IntList();
+        private final IntList fieldComments = new IntList();
+        private final IntList fieldSignatures = new IntList();
+        private final IntList methodNames = new IntList();
+        private final IntList methodMappedNames = new IntList();
+        private final IntList methodComments = new IntList();
+        private final IntList methodSignatures = new IntList();
+        private final IntList parameterStarts = new IntList();
+        private final IntList parameterIndices = new IntList();
+        private final IntList parameterNames = new IntList();
+        private final IntList parameterComments = new IntList();
+        private final List<PackedEnigmaClass> nestedClasses = new ArrayList<>();
+
+        public Builder(SymbolTable symbols, String obfuscatedName, String mappedName, String comment) {
+            this.symbols = symbols;
+            this.obfuscatedName = symbols.id(obfuscatedName);
+            this.mappedName = symbols.id(mappedName);
+            this.comment = symbols.id(comment);
+        }
+
+        public Builder addField(String obfuscatedName, String mappedName, String comment, String signature) {
+            fieldNames.add(symbols.id(obfuscatedName));
+            fieldMappedNames.add(symbols.id(mappedName));
+            fieldComments.add(symbols.id(comment));
+            fieldSignatures.add(symbols.id(signature));
+            return this;
+        }
+
+        public Builder addMethod(String obfuscatedName, String mappedName, String comment, String signature) {
+            methodNames.add(symbols.id(obfuscatedName));
+            methodMappedNames.add(symbols.id(mappedName));
+            methodComments.add(symbols.id(comment));
+            methodSignatures.add(symbols.id(signature));
+            parameterStarts.add(parameterIndices.size());
+            return this;
+        }
+
+        public Builder addParameter(int index, String name, String comment) {
+            if (methodNames.size() == 0) {
+                throw new IllegalStateException("Parameter " + name + " added before any method");
+            }
+            parameterIndices.add(index);
+            parameterNames.add(symbols.id(name));
+            parameterComments.add(symbols.id(comment));
+            return this;
+        }
+
+        public Builder addNestedClass(PackedEnigmaClass nestedClass) {
+            if (nestedClass.symbols != symbols) {
+                throw new IllegalArgumentException("Nested class " + nestedClass.getObfuscatedName() + " uses a different symbol table");
+            }
+            nestedClasses.add(nestedClass);
+            return this;
+        }
+
+        public PackedEnigmaClass freeze() {
+            return new PackedEnigmaClass(this);
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Deduplicates the names and descriptors of a run, giving each distinct one a dense int id. One table is shared by
+// every reader of the run, so the same descriptor read from a thousand files is a single string.
+public final class SymbolTable {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[1024];
+    private int size;
+
+    public SymbolTable() {
+        // Id 0 is always the empty name
+        id("");
+    }
+
+    public String intern(String symbol) {
+        return get(id(symbol));
+    }
+
+    public int id(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(symbol);
+            if (id != null) {
+                return id;
+            }
+
+            String[] symbols = this.symbols;
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+            }
+            symbols[size] = symbol;
+            this.symbols = symbols;
+            // Published after the array, so anyone who can see the id can also see the symbol
+            ids.put(symbol, size);
+            return size++;
+        }
+    }
+
+    public String get(int id) {
+        return symbols[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,32 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.engima;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Unsigned LEB128 ints, 7 bits per byte with the high bit set on every byte but the last, as used by the binary
+// mapping files and the remap index cache
+public final class VarInt {
+    private VarInt() {
+    }
+
+    public static int read(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public static void write(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
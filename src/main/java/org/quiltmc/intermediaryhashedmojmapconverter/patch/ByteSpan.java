@@ -0,0 +1,60 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.patch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A line of a patch file, read straight from its UTF-8 bytes. ASCII lines are never decoded unless a String is needed.
+final class ByteSpan implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private final boolean ascii;
+    private String string;
+
+    ByteSpan(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+
+        boolean ascii = true;
+        for (int i = start; i < end && ascii; i++) {
+            ascii = buffer.get(i) >= 0;
+        }
+        this.ascii = ascii;
+    }
+
+    @Override
+    public int length() {
+        return ascii ? end - start : toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (!ascii) {
+            return toString().charAt(index);
+        } else if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char) buffer.get(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (!ascii) {
+            return toString().subSequence(start, end);
+        } else if (start < 0 || end > this.end - this.start || start > end) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ByteSpan(buffer, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        if (string == null) {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return string;
+    }
+}
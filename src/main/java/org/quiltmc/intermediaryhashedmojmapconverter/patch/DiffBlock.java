@@ -1,23 +1,49 @@
 package org.quiltmc.intermediaryhashedmojmapconverter.patch;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
 
 public class DiffBlock {
     private final int sourceLine;
     private final int sourceSize;
     private final int destLine;
     private final int destSize;
-    private final List<DiffLine> diffLines;
+    // Blocks read from a patch file keep their lines as start and end offsets into the file until they are needed
+    @Nullable
+    private final ByteBuffer buffer;
+    private final int[] spans;
+    private final DiffLine.LineType[] types;
+    private List<DiffLine> diffLines;
+    private List<String> diff;
+    private List<String> destination;
+    private Map<DiffLine, int[]> lineNumbers;
 
     public DiffBlock(int sourceLine, int sourceSize, int destLine, int destSize, List<DiffLine> diffLines) {
         this.sourceLine = sourceLine;
         this.sourceSize = sourceSize;
         this.destLine = destLine;
         this.destSize = destSize;
+        this.buffer = null;
+        this.spans = null;
+        this.types = diffLines.stream().map(DiffLine::getType).toArray(DiffLine.LineType[]::new);
         this.diffLines = diffLines;
     }
 
+    DiffBlock(int sourceLine, int sourceSize, int destLine, int destSize, ByteBuffer buffer, int[] spans, DiffLine.LineType[] types) {
+        this.sourceLine = sourceLine;
+        this.sourceSize = sourceSize;
+        this.destLine = destLine;
+        this.destSize = destSize;
+        this.buffer = buffer;
+        this.spans = spans;
+        this.types = types;
+    }
+
     public String export() {
         StringBuilder out = new StringBuilder("@@ -");
         out.append(this.sourceLine);
@@ -36,29 +62,59 @@ public class DiffBlock {
     }
 
     public List<String> getDiff() {
-        List<String> diff = new ArrayList<>();
-        for (DiffLine lineEntry : this.diffLines) {
-            diff.add(lineEntry.getDiffFormattedLine());
+        if (this.diff == null) {
+            List<String> diff = new ArrayList<>(this.getLineCount());
+            for (DiffLine lineEntry : this.getDiffLines()) {
+                diff.add(lineEntry.getDiffFormattedLine());
+            }
+            this.diff = List.copyOf(diff);
         }
 
-        return diff;
+        return this.diff;
     }
 
     public List<String> getDestination() {
-        List<String> res = new ArrayList<>();
-        for (DiffLine diffLine : this.getDiffLines()) {
-            if (diffLine.getType() != DiffLine.LineType.REMOVED) {
-                res.add(diffLine.getLine());
+        if (this.destination == null) {
+            List<String> res = new ArrayList<>(this.getLineCount());
+            for (DiffLine diffLine : this.getDiffLines()) {
+                if (diffLine.getType() != DiffLine.LineType.REMOVED) {
+                    res.add(diffLine.getLine());
+                }
             }
+            this.destination = List.copyOf(res);
         }
 
-        return res;
+        return this.destination;
     }
 
     public List<DiffLine> getDiffLines() {
+        if (this.diffLines == null) {
+            List<DiffLine> diffLines = new ArrayList<>(this.getLineCount());
+            for (int i = 0; i < this.getLineCount(); ++i) {
+                diffLines.add(new DiffLine(this.getLineText(i), this.types[i]));
+            }
+            this.diffLines = List.copyOf(diffLines);
+        }
+
         return this.diffLines;
     }
 
+    public int getLineCount() {
+        return this.types.length;
+    }
+
+    public DiffLine.LineType getLineType(int index) {
+        return this.types[index];
+    }
+
+    // The line without its diff indent, read from the patch file without creating a DiffLine
+    public CharSequence getLineText(int index) {
+        if (this.buffer == null) {
+            return this.diffLines.get(index).getText();
+        }
+        return new ByteSpan(this.buffer, this.spans[index * 2], this.spans[index * 2 + 1]);
+    }
+
     public int getSourceLine() {
         return this.sourceLine;
     }
@@ -79,31 +135,34 @@ public class DiffBlock {
         if (!line.getType().increasesSourceLineNumber()) {
             throw new IllegalArgumentException();
         }
-        for (int i = 0, j = 0; i < diffLines.size(); ++i) {
-            DiffLine diffLine = diffLines.get(i);
-            if (diffLine.getType().increasesSourceLineNumber()) {
-                if (line.equals(diffLine)) {
-                    return sourceLine + j;
-                }
-                ++j;
-            }
-        }
-        return -1;
+        return this.getLineNumbers().getOrDefault(line, new int[]{-1, -1})[0];
     }
 
     public int getDestLineNumber(DiffLine line) {
         if (!line.getType().increasesDestLineNumber()) {
             throw new IllegalArgumentException();
         }
-        for (int i = 0, j = 0; i < diffLines.size(); ++i) {
-            DiffLine diffLine = diffLines.get(i);
-            if (diffLine.getType().increasesDestLineNumber()) {
-                if (line.equals(diffLine)) {
-                    return destLine + j;
+        return this.getLineNumbers().getOrDefault(line, new int[]{-1, -1})[1];
+    }
+
+    // The source and destination line number of every line of the block
+    private Map<DiffLine, int[]> getLineNumbers() {
+        if (this.lineNumbers == null) {
+            Map<DiffLine, int[]> lineNumbers = new IdentityHashMap<>(this.getLineCount() * 2);
+            int source = this.sourceLine;
+            int dest = this.destLine;
+            for (DiffLine diffLine : this.getDiffLines()) {
+                lineNumbers.put(diffLine, new int[]{source, dest});
+                if (diffLine.getType().increasesSourceLineNumber()) {
+                    ++source;
+                }
+                if (diffLine.getType().increasesDestLineNumber()) {
+                    ++dest;
                 }
-                ++j;
             }
+            this.lineNumbers = lineNumbers;
         }
-        return -1;
+
+        return this.lineNumbers;
     }
 }
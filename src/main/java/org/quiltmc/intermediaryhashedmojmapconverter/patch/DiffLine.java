@@ -1,18 +1,26 @@
 package org.quiltmc.intermediaryhashedmojmapconverter.patch;
 
 public class DiffLine {
-    private final String line;
+    private final CharSequence text;
     private final LineType type;
+    private String line;
 
-    public DiffLine(String line, LineType type) {
-        this.line = line;
+    public DiffLine(CharSequence text, LineType type) {
+        this.text = text;
         this.type = type;
     }
 
     public String getLine() {
+        if (this.line == null) {
+            this.line = this.text.toString();
+        }
         return this.line;
     }
 
+    public CharSequence getText() {
+        return this.text;
+    }
+
     public LineType getType() {
         return this.type;
     }
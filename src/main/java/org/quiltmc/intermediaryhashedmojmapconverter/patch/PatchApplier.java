@@ -0,0 +1,192 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.patch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Applies the blocks of a diff after checking their removed and unchanged lines against the file. A block whose lines
+// moved is looked for up to `fuzz` lines away from where it should be, comparing line hashes before the lines
+// themselves.
+public class PatchApplier {
+    public static final int DEFAULT_FUZZ = 100;
+
+    private final int fuzz;
+
+    public PatchApplier(int fuzz) {
+        this.fuzz = fuzz;
+    }
+
+    public ApplyResult apply(List<String> lines, Diff diff) {
+        List<DiffBlock> blocks = diff.getBlocks();
+        List<BlockResult> results = new ArrayList<>(blocks.size());
+        int[] starts = new int[blocks.size()];
+        int[] hashes = null;
+        // Offset of the last relocated block, later blocks have most likely moved by the same amount
+        int offset = 0;
+        // End of the last applied block, blocks can not overlap
+        int minStart = 0;
+        int size = lines.size();
+
+        for (int b = 0; b < blocks.size(); b++) {
+            DiffBlock block = blocks.get(b);
+            // A block without source lines is inserted after its source line instead of replacing it
+            int expected = (block.getSourceSize() == 0 ? block.getSourceLine() : block.getSourceLine() - 1) + offset;
+            int sourceLength = getSourceLength(block);
+
+            int start = -1;
+            if (expected >= minStart && matches(lines, block, expected)) {
+                start = expected;
+            } else if (sourceLength > 0) {
+                if (hashes == null) {
+                    hashes = new int[lines.size()];
+                    for (int i = 0; i < hashes.length; i++) {
+                        hashes[i] = lines.get(i).hashCode();
+                    }
+                }
+                start = relocate(lines, hashes, block, expected, minStart);
+            }
+
+            starts[b] = start;
+            if (start < 0) {
+                results.add(new BlockResult(block, Status.FAILED, expected + 1, -1));
+                continue;
+            }
+
+            offset = start - (expected - offset);
+            minStart = start + sourceLength;
+            size += countLines(block, DiffLine.LineType.ADDED) - countLines(block, DiffLine.LineType.REMOVED);
+            results.add(new BlockResult(block, start == expected ? Status.APPLIED : Status.RELOCATED, expected + 1, start + 1));
+        }
+
+        // Every block is placed, so the output can be filled in one pass
+        String[] out = new String[size];
+        int written = 0;
+        int read = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            if (starts[b] < 0) {
+                continue;
+            }
+
+            DiffBlock block = blocks.get(b);
+            for (; read < starts[b]; read++) {
+                out[written++] = lines.get(read);
+            }
+            for (int i = 0; i < block.getLineCount(); i++) {
+                switch (block.getLineType(i)) {
+                    case ADDED -> out[written++] = block.getLineText(i).toString();
+                    case REMOVED -> read++;
+                    // Keep the line of the file, which matched the block
+                    case UNCHANGED -> out[written++] = lines.get(read++);
+                }
+            }
+        }
+        for (; read < lines.size(); read++) {
+            out[written++] = lines.get(read);
+        }
+
+        return new ApplyResult(Arrays.asList(out), List.copyOf(results));
+    }
+
+    // Tries the positions around the expected one, nearest first
+    private int relocate(List<String> lines, int[] hashes, DiffBlock block, int expected, int minStart) {
+        int[] blockHashes = new int[getSourceLength(block)];
+        for (int i = 0, j = 0; i < block.getLineCount(); i++) {
+            if (block.getLineType(i) != DiffLine.LineType.ADDED) {
+                blockHashes[j++] = hash(block.getLineText(i));
+            }
+        }
+
+        for (int distance = 1; distance <= fuzz; distance++) {
+            int before = expected - distance;
+            int after = expected + distance;
+            if (before < minStart && after + blockHashes.length > lines.size()) {
+                break;
+            }
+
+            if (before >= minStart && hashesMatch(hashes, blockHashes, before) && matches(lines, block, before)) {
+                return before;
+            } else if (after >= minStart && hashesMatch(hashes, blockHashes, after) && matches(lines, block, after)) {
+                return after;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hashesMatch(int[] hashes, int[] blockHashes, int start) {
+        if (start + blockHashes.length > hashes.length) {
+            return false;
+        }
+        for (int i = 0; i < blockHashes.length; i++) {
+            if (hashes[start + i] != blockHashes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(List<String> lines, DiffBlock block, int start) {
+        if (start < 0 || start + getSourceLength(block) > lines.size()) {
+            return false;
+        }
+
+        int line = start;
+        for (int i = 0; i < block.getLineCount(); i++) {
+            if (block.getLineType(i) == DiffLine.LineType.ADDED) {
+                continue;
+            }
+            if (!lines.get(line++).contentEquals(block.getLineText(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same as String.hashCode, without creating the String
+    private static int hash(CharSequence text) {
+        if (text instanceof String string) {
+            return string.hashCode();
+        }
+
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int getSourceLength(DiffBlock block) {
+        return countLines(block, DiffLine.LineType.REMOVED) + countLines(block, DiffLine.LineType.UNCHANGED);
+    }
+
+    private static int countLines(DiffBlock block, DiffLine.LineType type) {
+        int count = 0;
+        for (int i = 0; i < block.getLineCount(); i++) {
+            if (block.getLineType(i) == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public enum Status {
+        APPLIED,
+        // Applied at another line than the one in the block header
+        RELOCATED,
+        FAILED
+    }
+
+    // Line numbers start at 1, the applied line is -1 for failed blocks
+    public record BlockResult(DiffBlock block, Status status, int expectedLine, int appliedLine) {
+    }
+
+    // The lines are those of the file with every block that did not fail applied
+    public record ApplyResult(List<String> lines, List<BlockResult> blocks) {
+        public boolean isSuccess() {
+            return blocks.stream().noneMatch(block -> block.status() == Status.FAILED);
+        }
+
+        public List<BlockResult> getFailedBlocks() {
+            return blocks.stream().filter(block -> block.status() == Status.FAILED).toList();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.patch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Reads patch files directly from their bytes. The lines of the blocks are only stored as offsets into the buffer, and
+// are turned into DiffLines and Strings when first asked for.
+final class PatchParser {
+    // Smaller files are cheaper to read than to map
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private int lineStart;
+    private int lineEnd;
+
+    private PatchParser(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    static Patch read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            }
+            return parse(buffer.flip());
+        }
+    }
+
+    static Patch parse(ByteBuffer buffer) {
+        return new PatchParser(buffer).parse();
+    }
+
+    private Patch parse() {
+        // Patch data
+        List<String> header = new ArrayList<>();
+        List<Diff> diffs = new ArrayList<>();
+        List<String> footer = new ArrayList<>();
+        boolean readingFooter = false;
+
+        // Diff data
+        boolean readingDiff = false;
+        String diffSrc = "";
+        String diffDest = "";
+        List<DiffBlock> diffBlocks = new ArrayList<>();
+        List<String> diffInfo = new ArrayList<>();
+
+        // Block data
+        boolean readingBlock = false;
+        int[] blockSpans = new int[64];
+        DiffLine.LineType[] blockTypes = new DiffLine.LineType[32];
+        int blockLines = 0;
+        int[] blockHeader = new int[4];
+        int blockFromRemaining = -1;
+        int blockToRemaining = -1;
+
+        while (nextLine()) {
+            // Read patch
+            if (startsWith("diff") && countTokens() >= 3) {
+                if (!readingDiff) {
+                    readingDiff = true;
+                } else {
+                    // Save current diff
+                    diffs.add(new Diff(diffSrc, diffDest, List.copyOf(diffBlocks), List.copyOf(diffInfo)));
+                    // Clear diff data
+                    diffSrc = "";
+                    diffDest = "";
+                    diffBlocks.clear();
+                    diffInfo.clear();
+                    // Clear block data
+                    readingBlock = false;
+                    blockLines = 0;
+                }
+
+                diffInfo.add(getLine()); // save command
+                continue;
+            }
+            int length = lineEnd - lineStart;
+            if (!readingFooter && !readingBlock && (length == 2 || length == 3) && startsWith(length == 2 ? "--" : "-- ")) { // a line inside a block won't match "-- "
+                readingFooter = true;
+                footer.add(getLine());
+                continue;
+            } else if (!readingDiff) {
+                header.add(getLine());
+                continue;
+            }
+
+            if (readingFooter) {
+                footer.add(getLine());
+                continue;
+            }
+
+            // Read diff
+            if (!readingBlock) {
+                if (startsWith("--- ") && length > 4) {
+                    String src = getLine().substring(4);
+                    int nextPosition = position;
+                    if (nextLine() && startsWith("+++ ") && lineEnd - lineStart > 4) {
+                        diffSrc = skipPathPrefix(src);
+                        diffDest = skipPathPrefix(getLine().substring(4));
+                    } else {
+                        // Not a file header after all, read the next line again
+                        position = nextPosition;
+                    }
+                } else if (startsWith("@@")) {
+                    // Read block header
+                    if (parseBlockHeader(blockHeader)) {
+                        readingBlock = true;
+                        blockFromRemaining = blockHeader[1];
+                        blockToRemaining = blockHeader[3];
+                    }
+                } else if (!startsWith("\\")) {
+                    // "\ No newline at end of file" follows the last line of a block
+                    diffInfo.add(getLine());
+                }
+                continue;
+            }
+
+            // Read block, dropping the diff indent
+            DiffLine.LineType type;
+            byte first = length == 0 ? (byte) ' ' : buffer.get(lineStart);
+            if (first == '\\') {
+                continue;
+            } else if (first == '-') {
+                type = DiffLine.LineType.REMOVED;
+                --blockFromRemaining;
+            } else if (first == '+') {
+                type = DiffLine.LineType.ADDED;
+                --blockToRemaining;
+            } else {
+                type = DiffLine.LineType.UNCHANGED;
+                --blockFromRemaining;
+                --blockToRemaining;
+            }
+
+            if (blockLines == blockTypes.length) {
+                blockTypes = Arrays.copyOf(blockTypes, blockLines * 2);
+                blockSpans = Arrays.copyOf(blockSpans, blockLines * 4);
+            }
+            blockTypes[blockLines] = type;
+            blockSpans[blockLines * 2] = Math.min(lineStart + 1, lineEnd);
+            blockSpans[blockLines * 2 + 1] = lineEnd;
+            blockLines++;
+
+            // Block end
+            if (blockFromRemaining <= 0 && blockToRemaining <= 0) {
+                readingBlock = false;
+                diffBlocks.add(new DiffBlock(blockHeader[0], blockHeader[1], blockHeader[2], blockHeader[3], buffer,
+                        Arrays.copyOf(blockSpans, blockLines * 2), Arrays.copyOf(blockTypes, blockLines)));
+                blockLines = 0;
+            }
+        }
+
+        // Save the last diff
+        if (!diffInfo.isEmpty()) {
+            diffs.add(new Diff(diffSrc, diffDest, List.copyOf(diffBlocks), List.copyOf(diffInfo)));
+        }
+
+        return new Patch(header, diffs, footer);
+    }
+
+    private boolean nextLine() {
+        if (position >= limit) {
+            return false;
+        }
+
+        lineStart = position;
+        int end = lineStart;
+        while (end < limit && buffer.get(end) != '\n') {
+            end++;
+        }
+        position = end + 1;
+        lineEnd = end > lineStart && buffer.get(end - 1) == '\r' ? end - 1 : end;
+        return true;
+    }
+
+    private boolean startsWith(String prefix) {
+        if (lineEnd - lineStart < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(lineStart + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int countTokens() {
+        int tokens = 0;
+        boolean inToken = false;
+        for (int i = lineStart; i < lineEnd; i++) {
+            boolean whitespace = Character.isWhitespace(buffer.get(i));
+            if (!whitespace && !inToken) {
+                tokens++;
+            }
+            inToken = !whitespace;
+        }
+        return tokens;
+    }
+
+    // Parses "@@ -<line>[,<size>] +<line>[,<size>] @@", where an omitted size is 1
+    private boolean parseBlockHeader(int[] header) {
+        int i = lineStart + 2;
+        i = skip(i, ' ');
+        if (i >= lineEnd || buffer.get(i) != '-') {
+            return false;
+        }
+        i = parseRange(i + 1, header, 0);
+        if (i < 0) {
+            return false;
+        }
+        i = skip(i, ' ');
+        if (i >= lineEnd || buffer.get(i) != '+') {
+            return false;
+        }
+        i = parseRange(i + 1, header, 2);
+        return i >= 0 && i + 2 < lineEnd && buffer.get(i) == ' ' && buffer.get(i + 1) == '@' && buffer.get(i + 2) == '@';
+    }
+
+    private int parseRange(int i, int[] header, int index) {
+        int start = i;
+        int line = 0;
+        while (i < lineEnd && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+            line = line * 10 + buffer.get(i++) - '0';
+        }
+        if (i == start) {
+            return -1;
+        }
+
+        int size = 1;
+        if (i < lineEnd && buffer.get(i) == ',') {
+            start = ++i;
+            size = 0;
+            while (i < lineEnd && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+                size = size * 10 + buffer.get(i++) - '0';
+            }
+            if (i == start) {
+                return -1;
+            }
+        }
+
+        header[index] = line;
+        header[index + 1] = size;
+        return i;
+    }
+
+    private int skip(int i, char c) {
+        while (i < lineEnd && buffer.get(i) == c) {
+            i++;
+        }
+        return i;
+    }
+
+    private String getLine() {
+        byte[] bytes = new byte[lineEnd - lineStart];
+        buffer.get(lineStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String skipPathPrefix(String input) {
+        if (input.startsWith("/")) {
+            return input;
+        }
+
+        Path path = Path.of(input);
+        StringBuilder output = new StringBuilder();
+        for (int i = 1; i < path.getNameCount(); ++i) {
+            output.append(path.getName(i));
+            if (i < path.getNameCount() - 1) {
+                output.append("/");
+            }
+        }
+        return output.toString();
+    }
+}
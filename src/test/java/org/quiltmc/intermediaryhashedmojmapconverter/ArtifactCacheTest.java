@@ -0,0 +1,103 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArtifactCacheTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testGet() throws Exception {
+        ArtifactCache cache = new ArtifactCache(temp, Long.MAX_VALUE, Duration.ofDays(1));
+        AtomicInteger produced = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Path>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.get("mappings/1.0.tiny", output -> {
+                    produced.incrementAndGet();
+                    Files.writeString(output, "tiny");
+                })));
+            }
+            for (Future<Path> future : futures) {
+                assertEquals(temp.resolve("mappings/1.0.tiny"), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, produced.get());
+        assertEquals("tiny", Files.readString(temp.resolve("mappings/1.0.tiny")));
+        try (var files = Files.list(temp.resolve("mappings"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        ArtifactCache cache = new ArtifactCache(temp, 10, Duration.ofDays(30));
+        Instant now = Instant.now();
+        for (int i = 0; i < 4; i++) {
+            Path path = temp.resolve("mappings/" + i + ".tiny");
+            Files.createDirectories(path.getParent());
+            Files.write(path, new byte[4]);
+            Files.setLastModifiedTime(path, FileTime.from(now.minus(Duration.ofDays(i * 20L))));
+        }
+        // Using an entry makes it the most recent one
+        assertNotNull(cache.find("mappings/3.tiny"));
+        // Metadata neither counts towards the size nor ages out
+        Path metadata = cache.resolveMetadata("snapshot-index.json");
+        Files.createDirectories(metadata.getParent());
+        Files.write(metadata, new byte[64]);
+        Files.setLastModifiedTime(metadata, FileTime.from(now.minus(Duration.ofDays(365))));
+
+        cache.evict();
+        // 2.tiny is too old, then 1.tiny is the least recently used
+        assertTrue(Files.exists(temp.resolve("mappings/0.tiny")));
+        assertFalse(Files.exists(temp.resolve("mappings/1.tiny")));
+        assertFalse(Files.exists(temp.resolve("mappings/2.tiny")));
+        assertTrue(Files.exists(temp.resolve("mappings/3.tiny")));
+        assertTrue(Files.exists(metadata));
+    }
+
+    @Test
+    public void testEvictLocked() throws Exception {
+        ArtifactCache cache = new ArtifactCache(temp, 0, Duration.ofDays(30));
+        Path locked = temp.resolve("mappings/locked.tiny");
+        Path unlocked = temp.resolve("mappings/unlocked.tiny");
+        Files.createDirectories(locked.getParent());
+        Files.write(locked, new byte[4]);
+        Files.write(unlocked, new byte[4]);
+        // A download of another process
+        Path part = Files.createTempFile(locked.getParent(), "other.tiny", ".part");
+
+        // Evicting while this thread holds the lock of an entry, like creating an entry does
+        cache.withLock("mappings/locked.tiny", () -> {
+            cache.evict();
+            return null;
+        });
+        assertTrue(Files.exists(locked));
+        assertFalse(Files.exists(unlocked));
+        assertTrue(Files.exists(part));
+
+        cache.evict();
+        assertFalse(Files.exists(locked));
+        assertTrue(Files.exists(part));
+    }
+}
@@ -0,0 +1,108 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversionManifestTest {
+    @TempDir
+    Path temp;
+
+    private Path output(String name, String content) throws Exception {
+        Path path = temp.resolve("output").resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+        return path;
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        Path outputRoot = temp.resolve("output");
+        Path manifestPath = ConversionManifest.getPath(outputRoot);
+        String a = ConversionManifest.hash("a".getBytes());
+        String b = ConversionManifest.hash("b".getBytes());
+
+        ConversionManifest first = ConversionManifest.load(manifestPath, "mappings");
+        assertTrue(first.isOutdated("A.mapping", a, outputRoot));
+        assertTrue(first.isOutdated("B.mapping", b, outputRoot));
+        output("C_a.mapping", "a");
+        output("C_b.mapping", "b");
+        first.record("A.mapping", a, "C_a.mapping");
+        first.record("B.mapping", b, "C_b.mapping");
+        assertTrue(first.finish(outputRoot).isEmpty());
+
+        // A is unchanged and skipped, B changed and is converted again, to a new output replacing the old one
+        ConversionManifest second = ConversionManifest.load(manifestPath, "mappings");
+        assertFalse(second.isOutdated("A.mapping", a, outputRoot));
+        String changed = ConversionManifest.hash("b2".getBytes());
+        assertTrue(second.isOutdated("B.mapping", changed, outputRoot));
+        output("C_b2.mapping", "b2");
+        second.record("B.mapping", changed, "C_b2.mapping");
+        assertEquals(Set.of("C_b.mapping"), second.finish(outputRoot));
+        assertTrue(Files.exists(outputRoot.resolve("C_a.mapping")));
+
+        // A was deleted from the input, so its output goes too
+        ConversionManifest third = ConversionManifest.load(manifestPath, "mappings");
+        assertFalse(third.isOutdated("B.mapping", changed, outputRoot));
+        assertEquals(Set.of("C_a.mapping"), third.finish(outputRoot));
+        assertFalse(Files.exists(outputRoot.resolve("C_a.mapping")));
+
+        // A missing output is converted again even when its input is unchanged
+        ConversionManifest fourth = ConversionManifest.load(manifestPath, "mappings");
+        Files.delete(outputRoot.resolve("C_b2.mapping"));
+        assertTrue(fourth.isOutdated("B.mapping", changed, outputRoot));
+    }
+
+    @Test
+    public void testMappingsChanged() throws Exception {
+        Path outputRoot = temp.resolve("output");
+        Path manifestPath = ConversionManifest.getPath(outputRoot);
+        String a = ConversionManifest.hash("a".getBytes());
+
+        ConversionManifest first = ConversionManifest.load(manifestPath, "mappings");
+        output("C_a.mapping", "a");
+        first.record("A.mapping", a, "C_a.mapping");
+        first.finish(outputRoot);
+
+        ConversionManifest other = ConversionManifest.load(manifestPath, "other mappings");
+        assertTrue(other.isOutdated("A.mapping", a, outputRoot));
+        // The entries of the old mappings are dropped rather than deleted, they are overwritten by this conversion
+        assertTrue(other.finish(outputRoot).isEmpty());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Path outputRoot = temp.resolve("output");
+        Path manifestPath = ConversionManifest.getPath(outputRoot);
+        String a = ConversionManifest.hash("a".getBytes());
+
+        ConversionManifest first = ConversionManifest.load(manifestPath, "mappings");
+        output("C_a.mapping", "a");
+        first.record("A.mapping", a, "C_a.mapping");
+        first.finish(outputRoot);
+
+        // A failed with the same content, its old output is kept but it is retried next time
+        ConversionManifest second = ConversionManifest.load(manifestPath, "mappings");
+        assertFalse(second.isOutdated("A.mapping", a, outputRoot));
+        second.recordFailure("A.mapping");
+        assertTrue(second.finish(outputRoot).isEmpty());
+        assertTrue(Files.exists(outputRoot.resolve("C_a.mapping")));
+
+        // A new input whose write failed after it was recorded leaves no output or entry behind
+        ConversionManifest third = ConversionManifest.load(manifestPath, "mappings");
+        assertTrue(third.isOutdated("A.mapping", a, outputRoot));
+        third.record("A.mapping", a, "C_a.mapping");
+        String b = ConversionManifest.hash("b".getBytes());
+        third.record("B.mapping", b, "C_b.mapping");
+        output("C_b.mapping", "partial");
+        third.recordFailure("B.mapping");
+        assertEquals(Set.of("C_b.mapping"), third.finish(outputRoot));
+        assertFalse(Files.exists(outputRoot.resolve("C_b.mapping")));
+        assertTrue(ConversionManifest.load(manifestPath, "mappings").isOutdated("B.mapping", b, outputRoot));
+    }
+}
@@ -0,0 +1,37 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversionMetricsTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testHistogram() throws Exception {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.Histogram histogram = metrics.histogram("file.remap");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L, "file" + i);
+        }
+        metrics.counter("remap.lookupMisses").add(3);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5_050_000, histogram.getTotalNanos());
+        assertEquals(100_000, histogram.getMaxNanos());
+        // Upper bounds of the power of two buckets
+        assertEquals(65_536, histogram.getPercentileNanos(0.5));
+        assertEquals(100_000, histogram.getPercentileNanos(0.99));
+
+        Path json = temp.resolve("metrics.json");
+        metrics.writeJson(json);
+        String content = Files.readString(json);
+        assertTrue(content.contains("\"remap.lookupMisses\" : 3"));
+        assertTrue(content.contains("\"max\" : \"file100\""));
+    }
+}
@@ -0,0 +1,79 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversionPipelineTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testRun() throws Exception {
+        Path input = temp.resolve("input");
+        Path output = temp.resolve("output");
+        Files.createDirectories(input);
+        // A file where the write stage needs a directory
+        Files.createDirectories(output);
+        Files.writeString(output.resolve("blocked"), "");
+
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Path file = input.resolve(i + ".mapping");
+            Files.writeString(file, "CLASS " + i);
+            files.add(file);
+        }
+        files.add(input.resolve("missing.mapping"));
+
+        // Small queues and few threads, so every stage has to wait on the others
+        ConversionPipeline pipeline = new ConversionPipeline(2, 2, 2);
+        List<ConversionScheduler.Failure> failures = pipeline.run(files, (file, content) -> {
+            String name = file.getFileName().toString();
+            return switch (name) {
+                case "0.mapping" -> throw new IllegalArgumentException("Remap failed");
+                case "1.mapping" -> new ConversionPipeline.Output(file, output.resolve("blocked/1.mapping"), content);
+                case "2.mapping" -> null;
+                default -> new ConversionPipeline.Output(file, output.resolve("sub/" + name),
+                        new String(content, StandardCharsets.UTF_8).replace("CLASS", "MAPPED").getBytes(StandardCharsets.UTF_8));
+            };
+        });
+
+        Map<Path, Throwable> failed = new HashMap<>();
+        failures.forEach(failure -> failed.put(failure.file(), failure.error()));
+        assertEquals(3, failures.size());
+        assertEquals("Remap failed", failed.get(input.resolve("0.mapping")).getMessage());
+        assertNotNull(failed.get(input.resolve("1.mapping")));
+        assertNotNull(failed.get(input.resolve("missing.mapping")));
+
+        for (int i = 3; i < 40; i++) {
+            assertEquals("MAPPED " + i, Files.readString(output.resolve("sub/" + i + ".mapping")));
+        }
+        assertFalse(Files.exists(output.resolve("sub/0.mapping")));
+        assertFalse(Files.exists(output.resolve("sub/2.mapping")));
+        try (var written = Files.list(output.resolve("sub"))) {
+            assertEquals(37, written.count());
+        }
+
+        List<ConversionPipeline.Stage> stages = pipeline.getStages();
+        ConversionPipeline.Stage read = stages.get(0);
+        ConversionPipeline.Stage remap = stages.get(1);
+        ConversionPipeline.Stage write = stages.get(2);
+        assertEquals(40, read.getCompleted());
+        assertEquals(1, read.getFailed());
+        // Each stage sees what the one before it completed, less the null outputs that are never written
+        assertEquals(read.getCompleted(), remap.getCompleted() + remap.getFailed());
+        assertEquals(1, remap.getFailed());
+        assertEquals(remap.getCompleted() - 1, write.getCompleted() + write.getFailed());
+        assertEquals(1, write.getFailed());
+        assertEquals(37, write.getCompleted());
+    }
+}
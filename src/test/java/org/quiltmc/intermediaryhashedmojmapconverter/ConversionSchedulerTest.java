@@ -0,0 +1,63 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversionSchedulerTest {
+    @Test
+    public void testAwaitCompletion() throws Exception {
+        // 2 threads and 2 queued tasks, so submitting 50 tasks has to wait for permits
+        ConversionScheduler scheduler = new ConversionScheduler(2, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        Set<Path> failing = new HashSet<>();
+
+        for (int i = 0; i < 50; i++) {
+            Path file = Path.of(i + ".mapping");
+            boolean fail = i % 7 == 0;
+            if (fail) {
+                failing.add(file);
+            }
+            scheduler.submit(file, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                    if (fail) {
+                        throw new IOException("Failed " + file);
+                    }
+                    completed.incrementAndGet();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            assertTrue(scheduler.getInProgress().size() <= 4);
+        }
+
+        List<ConversionScheduler.Failure> failures = scheduler.awaitCompletion();
+        assertTrue(scheduler.isTerminated());
+        assertTrue(scheduler.getInProgress().isEmpty());
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(50 - failing.size(), completed.get());
+
+        Set<Path> failed = new HashSet<>();
+        for (ConversionScheduler.Failure failure : failures) {
+            failed.add(failure.file());
+            assertEquals("Failed " + failure.file(), failure.error().getMessage());
+        }
+        assertEquals(failing, failed);
+        assertEquals(failing.size(), failures.size());
+
+        assertThrows(RuntimeException.class, () -> scheduler.submit(Path.of("late.mapping"), () -> {
+        }));
+        assertTrue(scheduler.getInProgress().isEmpty());
+    }
+}
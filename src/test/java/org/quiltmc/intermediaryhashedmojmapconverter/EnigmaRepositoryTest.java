@@ -0,0 +1,51 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnigmaRepositoryTest {
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testLoad() throws Exception {
+        Path mappings = TestUtil.getResource("org/quiltmc/test_mappings");
+        Files.copy(mappings.resolve("MinecraftClient.mapping"), temp.resolve("MinecraftClient.mapping"));
+        Files.writeString(temp.resolve("Copy.mapping"), "CLASS net/minecraft/class_1 net/minecraft/client/MinecraftClient$WorldLoadAction\n");
+        Files.writeString(temp.resolve("Broken.mapping"), "CLASS\n");
+
+        EnigmaRepository repository = EnigmaRepository.load(temp);
+        assertEquals(2, repository.size());
+        assertEquals(1, repository.getFailures().size());
+        assertEquals(temp.resolve("Broken.mapping"), repository.getFailures().get(0).file());
+
+        EnigmaRepository.Entry client = repository.getByObfuscatedName("net/minecraft/class_310");
+        assertNotNull(client);
+        assertEquals(Path.of("MinecraftClient.mapping"), client.path());
+        assertSame(client, repository.getByObfuscatedName("net/minecraft/class_310$class_5366"));
+        assertSame(client, repository.getByMappedName("net/minecraft/client/MinecraftClient$IntegratedResourceManager"));
+        assertNull(repository.getByMappedName("net/minecraft/client/MinecraftClient$Missing"));
+        // Entries are indexed in path order, so Copy.mapping is the first file mapping to the name
+        assertEquals(Path.of("Copy.mapping"), repository.getByMappedName("net/minecraft/client/MinecraftClient$WorldLoadAction").path());
+        assertEquals(2, repository.getDuplicateMappedNames().get("net/minecraft/client/MinecraftClient$WorldLoadAction").size());
+
+        Path output = temp.resolve("output");
+        assertTrue(repository.export(output).isEmpty());
+        assertEquals(Files.readString(mappings.resolve("MinecraftClient.mapping")).replace("\r\n", "\n").trim(),
+                Files.readString(output.resolve("net/minecraft/client/MinecraftClient.mapping")).trim());
+
+        Path binary = temp.resolve("repository.bin");
+        repository.writeBinary(binary);
+        EnigmaRepository loaded = EnigmaRepository.loadBinary(binary, new SymbolTable());
+        assertEquals(2, loaded.size());
+        assertEquals(Path.of("MinecraftClient.mapping"), loaded.getByObfuscatedName("net/minecraft/class_310$class_5366").path());
+        assertEquals(client.enigmaClass().toString(), loaded.getByObfuscatedName("net/minecraft/class_310").enigmaClass().toString());
+        assertSame(repository.getSymbols(), client.enigmaClass().getSymbols());
+    }
+}
@@ -0,0 +1,116 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GitBatchProcessTest {
+    @TempDir
+    Path repository;
+
+    @BeforeEach
+    public void createRepository() throws Exception {
+        TestUtil.git(repository, "init", "-q");
+        Files.writeString(repository.resolve("a b.mapping"), "CLASS a b\n");
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(repository.resolve("file" + i + ".mapping"), "CLASS file" + i + "\n");
+        }
+        TestUtil.git(repository, "add", ".");
+        TestUtil.git(repository, "commit", "-q", "-m", "Initial");
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        try (GitBatchProcess process = new GitBatchProcess(repository, true)) {
+            GitBatchProcess.GitObject object = process.request("HEAD:a b.mapping").get(10, TimeUnit.SECONDS);
+            assertEquals("blob", object.type());
+            assertEquals(TestUtil.git(repository, "rev-parse", "HEAD:a b.mapping"), object.sha());
+            assertEquals("CLASS a b\n", new String(object.content(), StandardCharsets.UTF_8));
+
+            // The missing object is echoed with its spaces, which used to be parsed as a sha, type and size
+            GitBatchProcess.GitObject missing = process.request("HEAD:a b missing").get(10, TimeUnit.SECONDS);
+            assertNull(missing.sha());
+            assertEquals("missing", missing.type());
+
+            // The process keeps answering after a missing object
+            assertEquals("blob", process.request("HEAD:file0.mapping").get(10, TimeUnit.SECONDS).type());
+        }
+    }
+
+    @Test
+    public void testBatchCheck() throws Exception {
+        try (GitBatchProcess process = new GitBatchProcess(repository, false)) {
+            GitBatchProcess.GitObject commit = process.request("HEAD^{commit}").get(10, TimeUnit.SECONDS);
+            assertEquals(TestUtil.git(repository, "rev-parse", "HEAD"), commit.sha());
+            assertEquals("commit", commit.type());
+            assertNull(commit.content());
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        GitBatchProcess process = new GitBatchProcess(repository, true);
+        CompletableFuture<GitBatchProcess.GitObject> before = process.request("HEAD:file1.mapping");
+        process.close();
+        // Requests made before closing are still answered, later ones fail instead of waiting forever
+        assertEquals("blob", before.get(10, TimeUnit.SECONDS).type());
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> process.request("HEAD:file2.mapping").get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+    @Test
+    public void testCloseAfterReaderStopped() throws Exception {
+        Set<ProcessHandle> before = ProcessHandle.current().children().collect(Collectors.toSet());
+        GitBatchProcess process = new GitBatchProcess(repository, true);
+        assertEquals("blob", process.request("HEAD:file0.mapping").get(10, TimeUnit.SECONDS).type());
+        List<ProcessHandle> git = ProcessHandle.current().children().filter(child -> !before.contains(child)).toList();
+        assertFalse(git.isEmpty());
+
+        // Stop the reader while git is still running, as an error reading its output would
+        String name = "git cat-file " + repository.getFileName();
+        Thread.getAllStackTraces().keySet().stream().filter(thread -> thread.getName().equals(name)).forEach(Thread::interrupt);
+        assertThrows(ExecutionException.class, () -> {
+            while (true) {
+                process.request("HEAD:file1.mapping").get(10, TimeUnit.SECONDS);
+            }
+        });
+
+        process.close();
+        process.close();
+        for (ProcessHandle child : git) {
+            assertFalse(child.isAlive(), child::toString);
+        }
+    }
+
+    @Test
+    public void testReaderPool() throws Exception {
+        try (GitObjectReader reader = new GitObjectReader(repository, 3)) {
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(reader.readBlobAsync("HEAD", "file" + i + ".mapping"));
+            }
+            CompletableFuture<byte[]> missing = reader.readBlobAsync("HEAD", "missing file.mapping");
+
+            for (int i = 0; i < 20; i++) {
+                assertEquals("CLASS file" + i + "\n", new String(futures.get(i).get(10, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+            }
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+            assertTrue(exception.getCause().getMessage().contains("missing file.mapping"));
+            assertEquals(TestUtil.git(repository, "rev-parse", "HEAD"), reader.resolveCommit("HEAD"));
+        }
+    }
+}
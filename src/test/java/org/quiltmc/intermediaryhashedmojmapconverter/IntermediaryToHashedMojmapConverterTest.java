@@ -8,7 +8,7 @@ import org.junit.jupiter.api.Test;
 
 public class IntermediaryToHashedMojmapConverterTest {
     @Test
-    public void testRemapFile() throws IOException {
+    public void testRemapFile() throws IOException, InterruptedException {
         Path inputFile = Path.of("C:\\Users\\elior\\git-projects\\quilt-mappings\\mappings");
 
         if (Files.exists(inputFile)) {
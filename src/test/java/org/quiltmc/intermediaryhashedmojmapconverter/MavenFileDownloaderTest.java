@@ -0,0 +1,138 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MavenFileDownloaderTest {
+    private static final MavenFileDownloader.MavenArtifact ARTIFACT = MavenFileDownloader.MavenArtifact.from("org.example:mappings:1.0");
+    private static final MavenFileDownloader.MavenArtifact SNAPSHOT = MavenFileDownloader.MavenArtifact.from("org.example:mappings:2.0-SNAPSHOT");
+
+    @TempDir
+    Path temp;
+
+    private static void publish(Path repository, MavenFileDownloader.MavenArtifact artifact, byte[] content, String checksum) throws IOException, NoSuchAlgorithmException {
+        Path jar = repository.resolve(artifact.getMavenArtifactPath(".jar"));
+        Files.createDirectories(jar.getParent());
+        Files.write(jar, content);
+        Files.writeString(jar.resolveSibling(jar.getFileName() + ".sha1"), checksum + "  " + jar.getFileName());
+    }
+
+    private static String sha1(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content));
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        byte[] content = "jar content".getBytes(StandardCharsets.UTF_8);
+        Path missing = temp.resolve("missing");
+        Path corrupt = temp.resolve("corrupt");
+        Path valid = temp.resolve("valid");
+        publish(corrupt, ARTIFACT, "other content".getBytes(StandardCharsets.UTF_8), sha1(content));
+        publish(valid, ARTIFACT, content, sha1(content));
+
+        Path output = temp.resolve("cache/mappings.jar");
+        MavenFileDownloader.downloadFile(ARTIFACT, output, List.of(missing.toUri().toString(), corrupt.toUri().toString(), valid.toUri().toString()));
+        assertArrayEquals(content, Files.readAllBytes(output));
+        // Nothing is left behind by the failed download
+        try (var files = Files.list(output.getParent())) {
+            assertEquals(List.of(output), files.toList());
+        }
+
+        Path failed = temp.resolve("cache/failed.jar");
+        IOException exception = assertThrows(IOException.class, () -> MavenFileDownloader.downloadFile(ARTIFACT, failed, List.of(corrupt.toUri().toString())));
+        assertTrue(exception.getSuppressed()[0].getMessage().startsWith("Checksum mismatch"));
+        assertFalse(Files.exists(failed));
+    }
+
+    @Test
+    public void testDownloadSnapshot() throws Exception {
+        byte[] content = "snapshot content".getBytes(StandardCharsets.UTF_8);
+        Path repository = temp.resolve("snapshots");
+        publish(repository, SNAPSHOT.withVersion("2.0-20211018.123456-3"), content, sha1(content));
+        Files.writeString(repository.resolve(SNAPSHOT.getMavenMetadataPath()), """
+                <metadata>
+                  <versioning>
+                    <snapshot>
+                      <timestamp>20211018.123456</timestamp>
+                      <buildNumber>3</buildNumber>
+                    </snapshot>
+                  </versioning>
+                </metadata>
+                """);
+
+        Path output = temp.resolve("cache/snapshot.jar");
+        MavenFileDownloader.downloadFile(SNAPSHOT, output, List.of(repository.toUri().toString()));
+        assertArrayEquals(content, Files.readAllBytes(output));
+    }
+
+    @Test
+    public void testResolveSnapshot() throws Exception {
+        Path repository = temp.resolve("snapshots");
+        Files.createDirectories(repository.resolve(SNAPSHOT.getMavenPath()));
+        Files.writeString(repository.resolve(SNAPSHOT.getMavenMetadataPath()), """
+                <metadata>
+                  <versioning>
+                    <snapshot>
+                      <timestamp>20211018.123456</timestamp>
+                      <buildNumber>3</buildNumber>
+                    </snapshot>
+                  </versioning>
+                </metadata>
+                """);
+        List<String> repositories = List.of(temp.resolve("missing").toUri().toString(), repository.toUri().toString());
+        ArtifactCache cache = new ArtifactCache(temp.resolve("cache"), Long.MAX_VALUE, Duration.ofDays(1));
+
+        assertEquals(SNAPSHOT, MavenFileDownloader.resolveSnapshot(SNAPSHOT, repositories, SnapshotIndex.load(cache), MavenFileDownloader.Mode.OFFLINE));
+        MavenFileDownloader.MavenArtifact resolved = MavenFileDownloader.resolveSnapshot(SNAPSHOT, repositories, SnapshotIndex.load(cache), MavenFileDownloader.Mode.ONLINE);
+        assertEquals("2.0-20211018.123456-3", resolved.version());
+
+        // Resolved from the index from now on
+        Files.delete(repository.resolve(SNAPSHOT.getMavenMetadataPath()));
+        for (MavenFileDownloader.Mode mode : MavenFileDownloader.Mode.values()) {
+            assertEquals(resolved.version(), MavenFileDownloader.resolveSnapshot(SNAPSHOT, repositories, SnapshotIndex.load(cache), mode).version());
+        }
+
+        IOException exception = assertThrows(IOException.class, () -> MavenFileDownloader.downloadFile(resolved, temp.resolve("cache/offline.jar"),
+                List.of("http://unreachable.invalid"), MavenFileDownloader.COPY, MavenFileDownloader.Mode.OFFLINE));
+        assertEquals(0, exception.getSuppressed().length);
+    }
+
+    @Test
+    public void testExtractEntry() throws Exception {
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(jar)) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("mappings/mappings.tiny"));
+            zip.write("tiny\t2\t0\tofficial\tnamed\n".getBytes(StandardCharsets.UTF_8));
+            // Read past by the checksum only
+            zip.putNextEntry(new ZipEntry("mappings/other.txt"));
+            zip.write(new byte[100_000]);
+        }
+        Path repository = temp.resolve("jars");
+        publish(repository, ARTIFACT, jar.toByteArray(), sha1(jar.toByteArray()));
+
+        Path output = temp.resolve("cache/1.0.tiny.gz");
+        MavenFileDownloader.downloadFile(ARTIFACT, output, List.of(repository.toUri().toString()), MavenFileDownloader.extractEntry(".tiny", true));
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(output))) {
+            assertEquals("tiny\t2\t0\tofficial\tnamed\n", new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Patch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Converts a patch made with git format-patch in a throwaway repository, so the input files are read through git
+// cat-file like they are from a real mappings repository
+public class PatchFileConverterRepositoryTest {
+    @TempDir
+    Path temp;
+
+    private static RemapIndex createIndex() {
+        RemapIndex.ClassEntry a = new RemapIndex.ClassEntry("net/minecraft/class_1", "net/minecraft/unmapped/C_a", "net/minecraft/unmapped/C_a",
+                Map.of(), Map.of(), Map.of(), Map.of("method_1;(I)V", "m_first;(I)V", "method_2;()V", "m_second;()V"));
+        return new RemapIndex(Map.of("net/minecraft/class_1", a));
+    }
+
+    @Test
+    public void testConvertPatch() throws Exception {
+        Path repository = temp.resolve("input repository");
+        Files.createDirectories(repository.resolve("mappings"));
+        TestUtil.git(repository, "init", "-q");
+        Files.writeString(repository.resolve("mappings/A.mapping"), """
+                CLASS net/minecraft/class_1 net/minecraft/A
+                	METHOD method_1 foo (I)V
+                		ARG 1 value
+                	METHOD method_2 baz ()V
+                """);
+        Files.writeString(repository.resolve("mappings/Old.mapping"), "CLASS net/minecraft/class_9 net/minecraft/Old\n");
+        TestUtil.git(repository, "add", ".");
+        TestUtil.git(repository, "commit", "-q", "-m", "Initial");
+
+        Files.writeString(repository.resolve("mappings/A.mapping"), """
+                CLASS net/minecraft/class_1 net/minecraft/A
+                	METHOD method_1 bar (I)V
+                		ARG 1 value
+                	METHOD method_2 baz ()V
+                """);
+        Files.writeString(repository.resolve("mappings/New.mapping"), "CLASS net/minecraft/class_8 net/minecraft/New\n");
+        Files.delete(repository.resolve("mappings/Old.mapping"));
+        TestUtil.git(repository, "add", "-A");
+        TestUtil.git(repository, "commit", "-q", "-m", "Rename foo");
+        TestUtil.git(repository, "format-patch", "-q", "-1", "-o", temp.resolve("patches").toString());
+
+        // The output repository as of the first commit
+        Path outputPath = temp.resolve("output");
+        Files.createDirectories(outputPath.resolve("mappings"));
+        Files.writeString(outputPath.resolve("mappings/A.mapping"), """
+                CLASS net/minecraft/unmapped/C_a net/minecraft/A
+                	METHOD m_first foo (I)V
+                		ARG 1 value
+                	METHOD m_second baz ()V
+                """);
+        Files.writeString(outputPath.resolve("mappings/Old.mapping"), "CLASS net/minecraft/class_9 net/minecraft/Old\n");
+
+        List<Path> patches = Util.walkDirectoryAndCollectFiles(temp.resolve("patches"));
+        assertEquals(1, patches.size());
+        Patch patch = Patch.read(patches.get(0));
+        assertEquals(List.of("mappings/Old.mapping"), patch.getRemovedFiles());
+        assertEquals(List.of("mappings/New.mapping"), patch.getAddedFiles());
+
+        try (GitObjectReader inputRepo = new GitObjectReader(repository)) {
+            OutputTree output = OutputTree.of(outputPath);
+            PatchFileConverter.convertFile(patches.get(0), createIndex(), inputRepo, output);
+            output.commit();
+        }
+
+        assertEquals("""
+                CLASS net/minecraft/unmapped/C_a net/minecraft/A
+                	METHOD m_first bar (I)V
+                		ARG 1 value
+                	METHOD m_second baz ()V
+                """, Files.readString(outputPath.resolve("mappings/A.mapping")));
+        assertEquals("CLASS net/minecraft/class_8 net/minecraft/New\n", Files.readString(outputPath.resolve("mappings/New.mapping")));
+        assertFalse(Files.exists(outputPath.resolve("mappings/Old.mapping")));
+    }
+}
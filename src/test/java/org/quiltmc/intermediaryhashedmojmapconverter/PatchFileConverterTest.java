@@ -1,6 +1,5 @@
 package org.quiltmc.intermediaryhashedmojmapconverter;
 
-import org.cadixdev.lorenz.MappingSet;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -28,8 +27,8 @@ public class PatchFileConverterTest {
     private static final String OUTPUT_ARTIFACT = "org.quiltmc:hashed-mojmap:1.17.1-20210916.004720-4";
     private static final String OUTPUT_NAMESPACE = "hashed";
 
-    private static String inputRepoHead;
-    private static MappingSet inputToOutput;
+    private static GitObjectReader inputRepo;
+    private static RemapIndex inputToOutput;
 
     static {
         Path outputsDir;
@@ -50,7 +49,7 @@ public class PatchFileConverterTest {
     @BeforeAll
     public static void prepare() throws IOException {
         assertTrue(Files.exists(INPUT_REPO_PATH), "The input repository " + INPUT_REPO_PATH + " does not exist");
-        inputRepoHead = Util.getRepoHead(INPUT_REPO_PATH);
+        inputRepo = new GitObjectReader(INPUT_REPO_PATH);
 
         // Copy the test mappings to the output directory
         for (Path path : Util.walkDirectoryAndCollectFiles(TEST_MAPPINGS_PATH)) {
@@ -61,14 +60,16 @@ public class PatchFileConverterTest {
             Files.copy(path, outputPath);
         }
 
-        inputToOutput = Util.createInputToOutputMappings(INPUT_ARTIFACT, INPUT_NAMESPACE, OUTPUT_ARTIFACT, OUTPUT_NAMESPACE);
+        inputToOutput = Util.createInputToOutputIndex(INPUT_ARTIFACT, INPUT_NAMESPACE, OUTPUT_ARTIFACT, OUTPUT_NAMESPACE);
     }
 
     @ParameterizedTest(name = "{1}")
     @MethodSource("provideConvertPatchFileArguments")
     public void testConvertPatchFile(Path path, Path relative) throws IOException {
         Patch patch = Patch.read(path);
-        PatchFileConverter.convertFile(path, inputToOutput, INPUT_REPO_PATH, OUTPUTS_DIR);
+        OutputTree output = OutputTree.of(OUTPUTS_DIR);
+        PatchFileConverter.convertFile(path, inputToOutput, inputRepo, output);
+        output.commit();
 
         for (String removedFile : patch.getRemovedFiles()) {
             assertFalse(Files.exists(OUTPUTS_DIR.resolve(removedFile)), "The file " + removedFile + " was not removed");
@@ -102,6 +103,8 @@ public class PatchFileConverterTest {
 
     @AfterAll
     public static void end() throws IOException {
-        Util.runGitCommand(INPUT_REPO_PATH, "checkout", inputRepoHead);
+        if (inputRepo != null) {
+            inputRepo.close();
+        }
     }
 }
@@ -0,0 +1,127 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quiltmc.intermediaryhashedmojmapconverter.patch.Diff;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatchSeriesTest {
+    @TempDir
+    Path temp;
+    private final List<Path> patches = new ArrayList<>();
+
+    private void writePatch(String name, String... files) throws Exception {
+        StringBuilder patch = new StringBuilder();
+        patch.append("From 0000000000000000000000000000000000000000 Mon Sep 17 00:00:00 2001\n");
+        patch.append("From: Test <test@example.com>\n");
+        patch.append("Subject: [PATCH] ").append(name).append("\n\n---\n");
+        for (String file : files) {
+            patch.append("diff --git a/").append(file).append(" b/").append(file).append("\n");
+            patch.append("index 0000000000..1111111111 100644\n");
+            patch.append("--- a/").append(file).append("\n");
+            patch.append("+++ b/").append(file).append("\n");
+            patch.append("@@ -1 +1 @@\n");
+            patch.append("-CLASS a\n");
+            patch.append("+CLASS b\n");
+        }
+        patch.append("-- \n2.39.5\n");
+
+        Path path = temp.resolve("patches").resolve(name + ".patch");
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, patch);
+        patches.add(path);
+    }
+
+    private Path patch(String name) {
+        return temp.resolve("patches").resolve(name + ".patch");
+    }
+
+    @BeforeEach
+    public void writePatches() throws Exception {
+        // Written out of order, the series is ordered by file name
+        writePatch("0005", "A.mapping");
+        writePatch("0001", "A.mapping", "B.mapping");
+        writePatch("0002", "C.mapping");
+        writePatch("0003", "A.mapping");
+        writePatch("0004", "B.mapping", "C.mapping");
+    }
+
+    @Test
+    public void testDependencies() throws Exception {
+        PatchSeries series = PatchSeries.read(patches);
+        assertEquals(List.of(), series.getDependencies(patch("0001")));
+        assertEquals(List.of(), series.getDependencies(patch("0002")));
+        assertEquals(List.of(patch("0001")), series.getDependencies(patch("0003")));
+        assertEquals(List.of(patch("0001"), patch("0002")), series.getDependencies(patch("0004")));
+        // Only the last earlier patch touching A, 0001 is reached through 0003
+        assertEquals(List.of(patch("0003")), series.getDependencies(patch("0005")));
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        PatchSeries series = PatchSeries.read(patches);
+        Path outputPath = temp.resolve("output");
+        OutputTree output = OutputTree.of(outputPath);
+        // 0001 and 0002 are independent, so each only finishes once both have started
+        CountDownLatch independent = new CountDownLatch(2);
+
+        List<ConversionScheduler.Failure> failures = series.convert(output, (file, patch, layer) -> {
+            String name = file.getFileName().toString().substring(0, 4);
+            if (name.equals("0001") || name.equals("0002")) {
+                independent.countDown();
+                assertTrue(independent.await(10, TimeUnit.SECONDS), "Independent patches did not run in parallel");
+            }
+            for (Diff diff : patch.getDiffs()) {
+                String content = layer.read(diff.getDst());
+                layer.write(diff.getDst(), (content == null ? "" : content) + name + "\n");
+            }
+        }, 4);
+        assertTrue(failures.isEmpty());
+        output.commit();
+
+        // Each file saw the patches touching it in series order
+        assertEquals("0001\n0003\n0005\n", Files.readString(outputPath.resolve("A.mapping")));
+        assertEquals("0001\n0004\n", Files.readString(outputPath.resolve("B.mapping")));
+        assertEquals("0002\n0004\n", Files.readString(outputPath.resolve("C.mapping")));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        PatchSeries series = PatchSeries.read(patches);
+        Path outputPath = temp.resolve("output");
+        OutputTree output = OutputTree.of(outputPath);
+
+        List<ConversionScheduler.Failure> failures = series.convert(output, (file, patch, layer) -> {
+            String name = file.getFileName().toString().substring(0, 4);
+            for (Diff diff : patch.getDiffs()) {
+                layer.write(diff.getDst(), name);
+            }
+            if (name.equals("0003")) {
+                throw new IllegalArgumentException("Failed " + name);
+            }
+        }, 4);
+        output.commit();
+
+        assertEquals(2, failures.size());
+        Map<Path, Throwable> errors = Map.of(failures.get(0).file(), failures.get(0).error(), failures.get(1).file(), failures.get(1).error());
+        assertEquals("Failed 0003", errors.get(patch("0003")).getMessage());
+        // 0005 depends on 0003 and is skipped, 0004 does not and still runs
+        assertInstanceOf(IllegalStateException.class, errors.get(patch("0005")));
+        assertTrue(errors.get(patch("0005")).getMessage().contains("0003.patch"));
+
+        // The failed patch's layer is never committed
+        assertEquals("0001", Files.readString(outputPath.resolve("A.mapping")));
+        assertEquals("0004", Files.readString(outputPath.resolve("B.mapping")));
+        assertEquals("0004", Files.readString(outputPath.resolve("C.mapping")));
+    }
+}
@@ -0,0 +1,142 @@
+package org.quiltmc.intermediaryhashedmojmapconverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaStreamRemapper;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RemapIndexTest {
+    private static RemapIndex createIndex() {
+        RemapIndex.ClassEntry inner = new RemapIndex.ClassEntry("class_2", "C_inner", "net/minecraft/unmapped/C_outer$C_inner",
+                Map.of(), Map.of(), Map.of(), Map.of());
+        RemapIndex.ClassEntry outer = new RemapIndex.ClassEntry("net/minecraft/class_1", "net/minecraft/unmapped/C_outer", "net/minecraft/unmapped/C_outer",
+                Map.of("class_2", inner),
+                Map.of("field_1;Lnet/minecraft/class_1;", "f_field;Lnet/minecraft/unmapped/C_outer;"),
+                Map.of("field_1", "f_field;Lnet/minecraft/unmapped/C_outer;"),
+                Map.of("method_1;(I)V", "m_method;(I)V"));
+        return new RemapIndex(Map.of("net/minecraft/class_1", outer, "net/minecraft/class_1$class_2", inner));
+    }
+
+    @Test
+    public void testRemap() {
+        RemapIndex index = createIndex();
+        Deque<RemapIndex.ClassEntry> classes = new ArrayDeque<>();
+
+        assertEquals("net/minecraft/unmapped/C_outer", Util.remapObfuscated(EnigmaMapping.Type.CLASS, "net/minecraft/class_1", false, false, index, classes));
+        assertEquals("m_method;(I)V", Util.remapObfuscated(EnigmaMapping.Type.METHOD, "method_1;(I)V", true, true, index, classes));
+        assertEquals("method_2;(Lnet/minecraft/unmapped/C_outer$C_inner;[Lnet/minecraft/class_3;)J",
+                Util.remapObfuscated(EnigmaMapping.Type.METHOD, "method_2;(Lnet/minecraft/class_1$class_2;[Lnet/minecraft/class_3;)J", true, true, index, classes));
+        assertEquals("f_field;Lnet/minecraft/unmapped/C_outer;", Util.remapObfuscated(EnigmaMapping.Type.FIELD, "field_1;Lnet/minecraft/class_1;", true, false, index, classes));
+        // Outdated field types fall back to the field name
+        assertEquals("f_field;Lnet/minecraft/unmapped/C_outer;", Util.remapObfuscated(EnigmaMapping.Type.FIELD, "field_1;I", true, false, index, classes));
+        assertThrows(RuntimeException.class, () -> Util.remapObfuscated(EnigmaMapping.Type.FIELD, "field_2;I", true, false, index, classes));
+
+        assertEquals("C_inner", Util.remapObfuscated(EnigmaMapping.Type.CLASS, "class_2", false, false, index, classes));
+        RemapIndex.ClassEntry inner = classes.peek();
+        // A sibling of the inner class is found in the outer class once the inner class is exited
+        classes.poll();
+        assertEquals("C_inner", Util.remapObfuscated(EnigmaMapping.Type.CLASS, "class_2", false, false, index, classes));
+        assertEquals(2, classes.size());
+
+        // A class that is not nested directly in its owner is pushed on top of the classes in between
+        assertEquals("C_inner", Util.remapObfuscated(EnigmaMapping.Type.CLASS, "class_2", false, false, index, classes));
+        assertEquals(3, classes.size());
+        classes.poll();
+        assertSame(inner, classes.peek());
+        assertEquals(2, classes.size());
+
+        // Unknown inner classes leave the class stack untouched
+        assertThrows(RuntimeException.class, () -> Util.remapObfuscated(EnigmaMapping.Type.CLASS, "class_3", false, false, index, classes));
+        assertEquals(2, classes.size());
+    }
+
+    @Test
+    public void testUnknownClass() {
+        RemapIndex index = createIndex();
+        Deque<RemapIndex.ClassEntry> classes = new ArrayDeque<>();
+
+        assertEquals("net/minecraft/class_9", Util.remapObfuscated(EnigmaMapping.Type.CLASS, "net/minecraft/class_9", false, false, index, classes));
+        assertEquals("method_1;()Lnet/minecraft/unmapped/C_outer;", Util.remapObfuscated(EnigmaMapping.Type.METHOD, "method_1;()Lnet/minecraft/class_1;", true, true, index, classes));
+        // Placeholders are never added to the index
+        assertNull(index.getClass("net/minecraft/class_9"));
+    }
+
+    @Test
+    public void testVisitorSymbols() {
+        SymbolTable symbols = new SymbolTable();
+        // A copy, so the name from the index is not the instance in the table
+        String interned = symbols.intern(new String("net/minecraft/unmapped/C_outer"));
+        RemapVisitor visitor = new RemapVisitor(createIndex(), "test", symbols);
+
+        assertSame(interned, visitor.visit(EnigmaMapping.Type.CLASS, "net/minecraft/class_1", false, false));
+        assertEquals("m_method;(I)V", visitor.visit(EnigmaMapping.Type.METHOD, "method_1;(I)V", true, true));
+        assertSame(symbols.intern("C_inner"), visitor.visit(EnigmaMapping.Type.CLASS, "class_2", false, false));
+    }
+
+    @Test
+    public void testStreamNesting() throws IOException {
+        // The second inner class is nested one level deeper than its owner
+        List<String> lines = List.of(
+                "CLASS net/minecraft/class_1",
+                "\tCLASS class_2",
+                "\t\tCLASS class_2",
+                "\tMETHOD method_1 (I)V",
+                "\tCLASS class_2"
+        );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EnigmaStreamRemapper.remap(EnigmaTokenizer.of(lines), new RemapVisitor(createIndex(), "test"), name -> out);
+        assertEquals("CLASS net/minecraft/unmapped/C_outer\n\tCLASS C_inner\n\t\tCLASS C_inner\n\tMETHOD m_method (I)V\n\tCLASS C_inner\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDescriptorCache() {
+        DescriptorCache cache = new DescriptorCache(4, new ConversionMetrics());
+        int[] calls = new int[1];
+        for (int i = 0; i < 3; i++) {
+            assertEquals("(LB;)V", cache.get("(LA;)V", descriptor -> {
+                calls[0]++;
+                return descriptor.replace('A', 'B');
+            }));
+        }
+        assertEquals(1, calls[0]);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("(LA" + i + ";)V", descriptor -> descriptor);
+        }
+        assertTrue(cache.size() <= 4);
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        RemapIndex index = createIndex();
+        Path path = Files.createTempDirectory("remapindextest").resolve("index.bin");
+        RemapIndexCache.write(path, "key", index);
+
+        assertNull(RemapIndexCache.read(path, "other key"));
+        RemapIndex read = RemapIndexCache.read(path, "key");
+        assertNotNull(read);
+        assertEquals(index.getClasses().keySet(), read.getClasses().keySet());
+
+        RemapIndex.ClassEntry outer = read.getClass("net/minecraft/class_1");
+        assertEquals("net/minecraft/unmapped/C_outer", outer.getDeobfuscatedName());
+        assertEquals(index.getClass("net/minecraft/class_1").getMethods(), outer.getMethods());
+        assertEquals(index.getClass("net/minecraft/class_1").getFields(), outer.getFields());
+        assertSame(read.getClass("net/minecraft/class_1$class_2"), outer.getInnerClass("class_2"));
+    }
+}
@@ -1,10 +1,26 @@
 package org.quiltmc.intermediaryhashedmojmapconverter;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TestUtil {
     public static Path getResource(String name) {
         return new File(TestUtil.class.getClassLoader().getResource(name).getPath()).toPath();
     }
+
+    // Runs git with a fixed identity, so commits work on machines without a git config
+    public static String git(Path directory, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git", "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0) {
+            throw new IOException(String.join(" ", command) + " failed:\n" + output);
+        }
+        return output.trim();
+    }
 }
@@ -0,0 +1,90 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.quiltmc.intermediaryhashedmojmapconverter.TestUtil;
+import org.quiltmc.intermediaryhashedmojmapconverter.Util;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaBinaryReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaBinaryWriter;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.PackedEnigmaClass;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.VarInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnigmaBinaryTest {
+    @Test
+    public void testWriteAndRead(@TempDir Path temp) throws IOException {
+        List<Path> files = Util.walkDirectoryAndCollectFiles(TestUtil.getResource("org/quiltmc/test_mappings"));
+        EnigmaBinaryWriter writer = new EnigmaBinaryWriter();
+        for (Path path : files) {
+            writer.add(path.getFileName().toString(), EnigmaReader.readFile(path));
+        }
+        writer.add("", EnigmaReader.readLines(List.of("CLASS a b", "\tCOMMENT caf\u00e9", "\tMETHOD c (I)V", "\t\tARG 3 d")));
+        // Another file defining the same class is kept rather than replacing the first
+        writer.add("copy", EnigmaReader.readLines(List.of("CLASS a e")));
+        Path binary = temp.resolve("mappings.bin");
+        writer.write(binary);
+
+        EnigmaBinaryReader reader = EnigmaBinaryReader.open(binary);
+        assertEquals(files.size() + 2, reader.size());
+        for (int i = 0; i < files.size(); i++) {
+            EnigmaFile file = EnigmaReader.readFile(files.get(i));
+            assertEquals(file.getEnigmaClass().getObfuscatedName(), reader.getClassName(i));
+            assertEquals(files.get(i).getFileName().toString(), reader.getPath(i));
+            assertEquals(file.toString(), reader.read(i).toString());
+        }
+        assertEquals("CLASS a b\n\tCOMMENT caf\u00e9\n\tMETHOD c (I)V\n\t\tARG 3 d\n", reader.read("a").toString());
+        assertEquals("copy", reader.getPath(files.size() + 1));
+        assertEquals("CLASS a e\n", reader.read(files.size() + 1).toString());
+        assertEquals(files.size() + 2, reader.readAll().size());
+        assertNull(reader.read("missing"));
+
+        Files.writeString(temp.resolve("text.mapping"), "CLASS a");
+        assertThrows(IOException.class, () -> EnigmaBinaryReader.open(temp.resolve("text.mapping")));
+    }
+
+    @Test
+    public void testPacked() throws IOException {
+        List<Path> files = Util.walkDirectoryAndCollectFiles(TestUtil.getResource("org/quiltmc/test_mappings"));
+        SymbolTable symbols = new SymbolTable();
+        EnigmaBinaryWriter fromFiles = new EnigmaBinaryWriter();
+        EnigmaBinaryWriter fromPacked = new EnigmaBinaryWriter();
+        for (Path path : files) {
+            EnigmaFile file = EnigmaReader.readFile(path);
+            fromFiles.add(path.getFileName().toString(), file);
+            fromPacked.add(path.getFileName().toString(), PackedEnigmaClass.of(file.getEnigmaClass(), symbols));
+        }
+
+        // A packed class is written exactly as the class it was packed from
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        fromFiles.write(expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        fromPacked.write(actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testVarInt() throws IOException {
+        int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int value : values) {
+            VarInt.write(out, value);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        for (int value : values) {
+            assertEquals(value, VarInt.read(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+}
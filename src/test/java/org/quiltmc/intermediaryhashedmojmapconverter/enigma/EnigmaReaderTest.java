@@ -1,15 +1,28 @@
 package org.quiltmc.intermediaryhashedmojmapconverter.enigma;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.quiltmc.intermediaryhashedmojmapconverter.TestUtil;
 import org.quiltmc.intermediaryhashedmojmapconverter.Util;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMapping;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaMethod;
 import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaStreamRemapper;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaTokenizer;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaWriter;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,4 +37,162 @@ public class EnigmaReaderTest {
             assertEquals(expected, actual);
         }
     }
+
+    @Test
+    public void testWriter(@TempDir Path temp) throws IOException {
+        List<Path> files = Util.walkDirectoryAndCollectFiles(TestUtil.getResource("org/quiltmc/test_mappings"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (Path path : files) {
+                EnigmaFile file = EnigmaReader.readFile(path);
+                String expected = Files.readString(path).replace("\r\n", "\n").trim();
+
+                Path exported = temp.resolve("exported/" + path.getFileName());
+                file.export(exported);
+                assertEquals(expected, Files.readString(exported).trim());
+
+                Path async = temp.resolve("async.mapping");
+                EnigmaWriter.write(file, async, executor);
+                assertEquals(expected, Files.readString(async).trim());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSymbolTable() throws IOException {
+        List<Path> files = Util.walkDirectoryAndCollectFiles(TestUtil.getResource("org/quiltmc/test_mappings"));
+        SymbolTable symbols = new SymbolTable();
+        for (Path path : files) {
+            EnigmaFile first = EnigmaReader.readFile(path, null, symbols);
+            EnigmaFile second = EnigmaReader.readFile(path, null, symbols);
+            assertEquals(EnigmaReader.readFile(path).toString(), first.toString());
+
+            assertSame(first.getEnigmaClass().getObfuscatedName(), second.getEnigmaClass().getObfuscatedName());
+            Iterator<EnigmaMethod> methods = second.getEnigmaClass().getMethods().iterator();
+            for (EnigmaMethod method : first.getEnigmaClass().getMethods()) {
+                assertSame(method.getSignature(), methods.next().getSignature());
+            }
+        }
+
+        int size = symbols.size();
+        assertEquals(size, symbols.id(symbols.get(size - 1)) + 1);
+        assertEquals(0, symbols.id(""));
+    }
+
+    @Test
+    public void testStreamRemapper() throws IOException {
+        List<Path> files = Util.walkDirectoryAndCollectFiles(TestUtil.getResource("org/quiltmc/test_mappings"));
+        for (Path path : files) {
+            int[] depth = new int[1];
+            EnigmaReader.ObfuscatedNameVisitor visitor = new EnigmaReader.ObfuscatedNameVisitor() {
+                @Override
+                public String visit(EnigmaMapping.Type type, String original, boolean signature, boolean isMethod) {
+                    if (!signature) {
+                        depth[0]++;
+                    }
+                    return original;
+                }
+
+                @Override
+                public void exitClass() {
+                    depth[0]--;
+                }
+            };
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String[] className = new String[1];
+            EnigmaStreamRemapper.remap(EnigmaTokenizer.open(path), visitor, name -> {
+                className[0] = name;
+                return out;
+            });
+
+            String expected = Files.readString(path).replace("\r\n", "\n").trim();
+            assertEquals(expected, out.toString(StandardCharsets.UTF_8).trim());
+            assertEquals(EnigmaReader.readFile(path).getEnigmaClass().getMappedName(), className[0]);
+            assertEquals(0, depth[0]);
+        }
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        List<List<String>> accepted = List.of(
+                List.of("", "CLASS a b", "\tMETHOD c ()V", "\t\tARG 1 d"),
+                List.of("CLASS a", "\tCOMMENT class", "\tFIELD b I", "COMMENT field", "\tMETHOD c ()V", "ARG 1 d", "\tCLASS e", "\tCOMMENT outer")
+        );
+        List<List<String>> rejected = List.of(
+                List.of(),
+                List.of("", ""),
+                List.of("\tFIELD b I", "CLASS a"),
+                List.of("CLASS"),
+                List.of("CLASS a", "\tUNKNOWN b"),
+                List.of("CLASS a", "\tFIELD b"),
+                List.of("CLASS a", "\tMETHOD b"),
+                List.of("CLASS a", "\tARG 1 b"),
+                List.of("CLASS a", "\tFIELD b I", "\t\tARG 1 c"),
+                List.of("CLASS a", "\tMETHOD b ()V", "\t\tARG c"),
+                List.of("CLASS a", "\tMETHOD b ()V", "\t\tARG x c"),
+                List.of("CLASS a", "COMMENT after"),
+                List.of("CLASS a", "\tFIELD b I", "CLASS c")
+        );
+
+        for (List<String> lines : accepted) {
+            EnigmaFile file = EnigmaReader.readLines(lines);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            EnigmaStreamRemapper.remap(EnigmaTokenizer.of(lines), (type, original, signature, isMethod) -> original, name -> out);
+            assertEquals(String.join("\n", lines) + "\n", out.toString(StandardCharsets.UTF_8));
+            assertEquals(file.toString(), EnigmaReader.readLines(List.of(out.toString(StandardCharsets.UTF_8).split("\n"))).toString());
+        }
+        for (List<String> lines : rejected) {
+            IllegalArgumentException reader = assertThrows(IllegalArgumentException.class, () -> EnigmaReader.readLines(lines), lines::toString);
+            IllegalArgumentException remapper = assertThrows(IllegalArgumentException.class,
+                    () -> EnigmaStreamRemapper.remap(EnigmaTokenizer.of(lines), (type, original, signature, isMethod) -> original, name -> new ByteArrayOutputStream()), lines::toString);
+            assertEquals(reader.getMessage(), remapper.getMessage(), lines::toString);
+        }
+    }
+
+    @Test
+    public void testTokenizer() {
+        EnigmaFile file = EnigmaReader.readLines(List.of(
+                "CLASS a b\r",
+                "",
+                "\tFIELD c d I",
+                "\t\tCOMMENT  spaced comment ",
+                "\tMETHOD e ()V",
+                "\t\tARG 1 f"
+        ));
+        assertEquals("CLASS a b\n\tFIELD c d I\n\t\tCOMMENT  spaced comment\n\tMETHOD e ()V\n\t\tARG 1 f\n", file.toString());
+
+        // More bytes than characters, so the buffer has to grow
+        String comment = "\u00e9\u4e2d\ud83d\ude00".repeat(20);
+        EnigmaTokenizer tokenizer = EnigmaTokenizer.of(List.of("CLASS a", "\tCOMMENT " + comment, "\tCOMMENT \ud800"));
+        assertTrue(tokenizer.next());
+        assertTrue(tokenizer.next());
+        assertEquals(comment, tokenizer.getCommentText());
+        assertTrue(tokenizer.next());
+        assertEquals("?", tokenizer.getCommentText());
+        assertFalse(tokenizer.next());
+
+        // Reset lines replace the whole input, longer ones grow the buffer
+        for (String line : List.of("\tFIELD a b I", "", "\tCOMMENT " + comment, "CLASS c")) {
+            tokenizer.reset(line);
+            assertEquals(!line.isEmpty(), tokenizer.next());
+            if (!line.isEmpty()) {
+                assertEquals(line, tokenizer.getLine());
+                assertEquals(1, tokenizer.getLineNumber());
+                assertFalse(tokenizer.next());
+            }
+        }
+        // A buffer the tokenizer was created with is never written to
+        byte[] content = "CLASS a\n".getBytes(StandardCharsets.UTF_8);
+        EnigmaTokenizer wrapped = new EnigmaTokenizer(ByteBuffer.wrap(content));
+        wrapped.reset("CLASS b");
+        assertTrue(wrapped.next());
+        assertEquals("b", wrapped.getToken(1));
+        assertEquals("CLASS a\n", new String(content, StandardCharsets.UTF_8));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> EnigmaReader.readLines(List.of("CLASS a", "\tUNKNOWN b")));
+        assertTrue(exception.getMessage().contains("line 2"));
+    }
 }
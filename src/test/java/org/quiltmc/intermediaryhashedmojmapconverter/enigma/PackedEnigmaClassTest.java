@@ -0,0 +1,48 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.enigma;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.quiltmc.intermediaryhashedmojmapconverter.TestUtil;
+import org.quiltmc.intermediaryhashedmojmapconverter.Util;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaFile;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.EnigmaReader;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.PackedEnigmaClass;
+import org.quiltmc.intermediaryhashedmojmapconverter.engima.SymbolTable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedEnigmaClassTest {
+    @Test
+    public void testPack() throws IOException {
+        List<Path> files = Util.walkDirectoryAndCollectFiles(TestUtil.getResource("org/quiltmc/test_mappings"));
+        SymbolTable symbols = new SymbolTable();
+        for (Path path : files) {
+            EnigmaFile file = EnigmaReader.readFile(path);
+            PackedEnigmaClass packed = PackedEnigmaClass.of(file.getEnigmaClass(), symbols);
+            assertEquals(file.toString(), packed.toString());
+            assertEquals(file.toString(), new EnigmaFile(packed.toEnigmaClass()).toString());
+        }
+
+        // Members are sorted when frozen, the first of two equal members is kept
+        PackedEnigmaClass packed = new PackedEnigmaClass.Builder(symbols, "a", "", "")
+                .addMethod("c", "second", "", "()V")
+                .addMethod("b", "", "", "(I)V").addParameter(1, "value", "")
+                .addMethod("b", "", "", "()V")
+                .addMethod("c", "ignored", "", "()V")
+                .addField("d", "", "", "I")
+                .addNestedClass(new PackedEnigmaClass.Builder(symbols, "e", "E", "").freeze())
+                .freeze();
+        assertEquals("""
+                CLASS a
+                \tFIELD d I
+                \tMETHOD b ()V
+                \tMETHOD b (I)V
+                \t\tARG 1 value
+                \tMETHOD c second ()V
+                \tCLASS e E
+                """, packed.toString());
+    }
+}
@@ -0,0 +1,45 @@
+package org.quiltmc.intermediaryhashedmojmapconverter.patch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.quiltmc.intermediaryhashedmojmapconverter.PatchRemapper;
+import org.quiltmc.intermediaryhashedmojmapconverter.RemapIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatchRemapperTest {
+    private static RemapIndex createIndex() {
+        RemapIndex.ClassEntry inner = new RemapIndex.ClassEntry("class_2", "C_inner", "net/minecraft/unmapped/C_outer$C_inner",
+                Map.of(), Map.of(), Map.of(), Map.of());
+        RemapIndex.ClassEntry outer = new RemapIndex.ClassEntry("net/minecraft/class_1", "net/minecraft/unmapped/C_outer", "net/minecraft/unmapped/C_outer",
+                Map.of("class_2", inner),
+                Map.of("field_1;Lnet/minecraft/class_1;", "f_field;Lnet/minecraft/unmapped/C_outer;"),
+                Map.of("field_1", "f_field;Lnet/minecraft/unmapped/C_outer;"),
+                Map.of("method_1;(I)V", "m_method;(I)V"));
+        return new RemapIndex(Map.of("net/minecraft/class_1", outer, "net/minecraft/class_1$class_2", inner));
+    }
+
+    @Test
+    public void testRemap() throws IOException {
+        List<String> source = List.of(
+                "CLASS net/minecraft/class_1",
+                "\tCLASS class_2",
+                "\t\tFIELD field_3 I",
+                "\tMETHOD method_1 (I)V",
+                "\t\tARG 1 old");
+        Diff diff = new Diff("a.mapping", "a.mapping", List.of(new DiffBlock(4, 2, 4, 2, List.of(
+                new DiffLine("\tMETHOD method_1 (I)V", DiffLine.LineType.UNCHANGED),
+                new DiffLine("\t\tARG 1 old", DiffLine.LineType.REMOVED),
+                new DiffLine("\t\tARG 1 new", DiffLine.LineType.ADDED)))),
+                List.of("diff --git a/a.mapping b/a.mapping", "index 0123456..789abcd 100644"));
+
+        Diff remapped = new PatchRemapper(createIndex()).remap(diff, source);
+        // The method is looked up in the outer class found before the block, not in the inner class
+        assertEquals(List.of(" \tMETHOD m_method (I)V", "-\t\tARG 1 old", "+\t\tARG 1 new"), remapped.getBlocks().get(0).getDiff());
+        assertEquals(List.of("diff --git a/a.mapping b/a.mapping"), remapped.getInfo());
+        assertThrows(IllegalArgumentException.class, () -> new PatchRemapper(createIndex()).remap(diff, null));
+    }
+}
@@ -5,6 +5,8 @@ import org.quiltmc.intermediaryhashedmojmapconverter.TestUtil;
 import org.quiltmc.intermediaryhashedmojmapconverter.Util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -35,4 +37,65 @@ public class PatchTest {
             }
         }
     }
+
+    @Test
+    public void testRead() {
+        String patch = "From 0123 Mon Sep 17 00:00:00 2001\r\n"
+                + "diff --git a/mappings/A.mapping b/mappings/A.mapping\r\n"
+                + "index 0123456..789abcd 100644\r\n"
+                + "--- a/mappings/A.mapping\r\n"
+                + "+++ b/mappings/A.mapping\r\n"
+                + "@@ -2 +2,2 @@ CLASS a/A\r\n"
+                + " \tFIELD f I\r\n"
+                + "+\tFIELD g \u00e9\r\n"
+                + "\\ No newline at end of file\r\n"
+                + "-- \r\n"
+                + "2.33.0\r\n";
+        Patch read = PatchParser.parse(ByteBuffer.wrap(patch.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("From 0123 Mon Sep 17 00:00:00 2001"), read.getHeader());
+        assertEquals(List.of("-- ", "2.33.0"), read.getFooter());
+        Diff diff = read.getDiffs().get(0);
+        assertEquals("mappings/A.mapping", diff.getSrc());
+        assertEquals(List.of("diff --git a/mappings/A.mapping b/mappings/A.mapping", "index 0123456..789abcd 100644"), diff.getInfo());
+
+        // Omitted block sizes default to 1
+        DiffBlock block = diff.getBlocks().get(0);
+        assertEquals(1, block.getSourceSize());
+        assertEquals(2, block.getDestSize());
+        assertEquals(List.of(" \tFIELD f I", "+\tFIELD g \u00e9"), block.getDiff());
+        assertEquals("\tFIELD g \u00e9", block.getLineText(1).toString());
+        assertEquals(10, block.getLineText(1).length());
+        assertSame(block.getDiffLines(), block.getDiffLines());
+    }
+
+    @Test
+    public void testApplyRelocated() {
+        Diff diff = new Diff("a.mapping", "a.mapping", List.of(
+                new DiffBlock(2, 2, 2, 2, List.of(
+                        new DiffLine("\tFIELD a I", DiffLine.LineType.UNCHANGED),
+                        new DiffLine("\tFIELD b I", DiffLine.LineType.REMOVED),
+                        new DiffLine("\tFIELD c I", DiffLine.LineType.ADDED))),
+                // Inserted after line 4
+                new DiffBlock(4, 0, 5, 1, List.of(new DiffLine("\tFIELD e I", DiffLine.LineType.ADDED)))),
+                List.of());
+
+        List<String> lines = List.of("CLASS a", "\tFIELD a I", "\tFIELD b I", "\tFIELD d I");
+        PatchApplier.ApplyResult result = new PatchApplier(2).apply(lines, diff);
+        assertTrue(result.isSuccess());
+        assertEquals(List.of("CLASS a", "\tFIELD a I", "\tFIELD c I", "\tFIELD d I", "\tFIELD e I"), result.lines());
+
+        // Two lines were added above the block, which moves the next block as well
+        List<String> moved = List.of("CLASS a", "\tCOMMENT x", "\tCOMMENT y", "\tFIELD a I", "\tFIELD b I", "\tFIELD d I");
+        result = new PatchApplier(2).apply(moved, diff);
+        assertEquals(PatchApplier.Status.RELOCATED, result.blocks().get(0).status());
+        assertEquals(4, result.blocks().get(0).appliedLine());
+        assertEquals(List.of("CLASS a", "\tCOMMENT x", "\tCOMMENT y", "\tFIELD a I", "\tFIELD c I", "\tFIELD d I", "\tFIELD e I"), result.lines());
+
+        // Out of the fuzz window the block fails and the file is kept as is around it
+        result = new PatchApplier(1).apply(moved, diff);
+        assertFalse(result.isSuccess());
+        assertEquals(PatchApplier.Status.FAILED, result.blocks().get(0).status());
+        assertThrows(IllegalStateException.class, () -> Patch.applyDiff(List.of("CLASS a", "\tFIELD x I", "\tFIELD y I"), diff));
+    }
 }